@@ -162,9 +162,8 @@ public class Chord extends NoteTransformation {
      */
     @Override
     public String toString() {
-        notes.sort(Note::compareTo);
         var string = new StringBuilder("Chord: [");
-        notes.forEach(note -> string.append(note.getPitch()).append(", "));
+        notes.stream().sorted().forEach(note -> string.append(note.getPitch()).append(", "));
         string.setLength(string.length() - 2);
         return string.append("]").toString();
     }
@@ -53,7 +53,7 @@ public class ChordProgression extends NoteTransformation {
      * Add the chord of the specified degree in the chord progression scale.
      * @param degree The degree of the key. This will be the root note of the chord.
      * @throws RuntimeException If the key equals No_Key.
-     * @throws IllegalArgumentException If the scale degree is not between 1 and 7
+     * @throws IllegalArgumentException If the scale degree is not between 1 and the number of degrees of the key
      * @return The chord progression object with the added chord or no new chord (if something weird happens)
      */
     public ChordProgression addChordBasedOnScaleDegree(int degree) { return this.addAChord(key.getChordByDegree(degree)); }
@@ -0,0 +1,306 @@
+package com.JScore;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This is the immutable version of the {@link Chord}.
+ * Every operation returns a new chord and leaves this one untouched, so a chord can be shared between threads without copying it.
+ * The notes are stored as midi keys plus a transposition, so transposing a chord is constant time
+ * and the new chord shares its notes with the original one. Chords are small, so the other operations copy the notes.
+ */
+public final class ImmutableChord {
+
+    private final byte[] midiKeys;
+    private final int transposition;
+    private final int lowestMidiKey;
+    private final int highestMidiKey;
+
+    /**
+     * Creates an immutable chord with the specified note as the root note
+     * @param rootNote The root note of the chord
+     */
+    public ImmutableChord(@NotNull Note rootNote) { this(new byte[] {rootNote.getMidiKey()}, 0); }
+
+    /**
+     * Creates an immutable chord from midi keys and a transposition, without checking that the transposed notes are in range.
+     * @param midiKeys The midi keys of the chord, which will not be copied
+     * @param transposition The number of semitones to add to each midi key
+     */
+    ImmutableChord(byte @NotNull [] midiKeys, int transposition) {
+        this.midiKeys = midiKeys;
+        this.transposition = transposition;
+        int lowest = Integer.MAX_VALUE, highest = Integer.MIN_VALUE;
+        for (byte midiKey : midiKeys) {
+            lowest = Math.min(lowest, midiKey);
+            highest = Math.max(highest, midiKey);
+        }
+        this.lowestMidiKey = lowest;
+        this.highestMidiKey = highest;
+    }
+
+    private ImmutableChord(@NotNull ImmutableChord chord, int transposition) {
+        this.midiKeys = chord.midiKeys;
+        this.transposition = transposition;
+        this.lowestMidiKey = chord.lowestMidiKey;
+        this.highestMidiKey = chord.highestMidiKey;
+    }
+
+    /**
+     * Creates an immutable chord with the same notes as a chord.
+     * @param chord The chord to copy
+     * @return The immutable chord
+     */
+    public static @NotNull ImmutableChord of(@NotNull Chord chord) {
+        byte[] midiKeys = new byte[chord.getNotes().size()];
+        for (int i = 0; i < midiKeys.length; i++)
+            midiKeys[i] = chord.getNotes().get(i).getMidiKey();
+        return new ImmutableChord(midiKeys, 0);
+    }
+
+    /**
+     * Creates a mutable chord with the same notes as this chord.
+     * @return The new chord
+     */
+    public @NotNull Chord toChord() {
+        Chord chord = new Chord(getNote(0));
+        for (int i = 1; i < size(); i++)
+            chord.appendANewNote(getNote(i));
+        return chord;
+    }
+
+    /**
+     * Gets the number of notes of this chord
+     * @return The number of notes of this chord
+     */
+    public int size() { return midiKeys.length; }
+
+    /**
+     * Gets the midi key of a note of this chord
+     * @param index The index of the note
+     * @return The midi key of the note
+     * @throws ArrayIndexOutOfBoundsException If the index is out of bounds.
+     */
+    public byte getMidiKey(int index) { return (byte) (midiKeys[index] + transposition); }
+
+    /**
+     * Gets a note of this chord
+     * @param index The index of the note
+     * @return A new note object with the midi key of the note
+     * @throws ArrayIndexOutOfBoundsException If the index is out of bounds.
+     */
+    public @NotNull Note getNote(int index) { return new Note(getMidiKey(index)); }
+
+    /**
+     * Get the notes of this chord.
+     * @return An unmodifiable list of the notes of this chord, where each note is a new note object
+     */
+    public @NotNull List<Note> getNotes() {
+        return new AbstractList<>() {
+            @Override
+            public Note get(int index) { return getNote(index); }
+
+            @Override
+            public int size() { return midiKeys.length; }
+        };
+    }
+
+    /**
+     * Returns a chord with a minor second added after the last note of this chord.
+     * @return The new chord
+     */
+    public ImmutableChord addMinor2() { return appendANoteSemitonesApartFromLastOne(1); }
+
+    /**
+     * Returns a chord with a major second added after the last note of this chord.
+     * @return The new chord
+     */
+    public ImmutableChord addMajor2() { return appendANoteSemitonesApartFromLastOne(2); }
+
+    /**
+     * Returns a chord with a minor third added after the last note of this chord.
+     * @return The new chord
+     */
+    public ImmutableChord addMinor3() { return appendANoteSemitonesApartFromLastOne(3); }
+
+    /**
+     * Returns a chord with a major third added after the last note of this chord.
+     * @return The new chord
+     */
+    public ImmutableChord addMajor3() { return appendANoteSemitonesApartFromLastOne(4); }
+
+    /**
+     * Returns a chord with a fourth added after the last note of this chord.
+     * @return The new chord
+     */
+    public ImmutableChord addPerfect4() { return appendANoteSemitonesApartFromLastOne(5); }
+
+    /**
+     * Returns a chord with a tritone (augmented fourth) added after the last note of this chord.
+     * @return The new chord
+     */
+    public ImmutableChord addTritone() { return appendANoteSemitonesApartFromLastOne(6); }
+
+    /**
+     * Returns a chord with a fifth added after the last note of this chord.
+     * @return The new chord
+     */
+    public ImmutableChord addPerfect5() { return appendANoteSemitonesApartFromLastOne(7); }
+
+    /**
+     * Returns a chord with a major chord built on the last note of this chord.
+     * @return The new chord
+     */
+    public ImmutableChord appendMajorChord() { return addMajor3().addMinor3(); }
+
+    /**
+     * Returns a chord with a minor chord built on the last note of this chord.
+     * @return The new chord
+     */
+    public ImmutableChord appendMinorChord() { return addMinor3().addMajor3(); }
+
+    private ImmutableChord appendANoteSemitonesApartFromLastOne(int semitonesApart) {
+        return appendANewNote(new Note((byte) (getMidiKey(midiKeys.length - 1) + semitonesApart)));
+    }
+
+    /**
+     * Returns a chord with a new note added after the last note of this chord.
+     * @param noteToAdd The note to add
+     * @return The new chord
+     */
+    public ImmutableChord appendANewNote(@NotNull Note noteToAdd) {
+        byte[] newMidiKeys = transposedMidiKeys(midiKeys.length + 1);
+        newMidiKeys[midiKeys.length] = noteToAdd.getMidiKey();
+        return new ImmutableChord(newMidiKeys, 0);
+    }
+
+    /**
+     * Copies the transposed midi keys of this chord into a new array.
+     * @param length The length of the new array, which can leave room for more notes
+     * @return The new array
+     */
+    private byte @NotNull [] transposedMidiKeys(int length) {
+        byte[] transposedMidiKeys = new byte[length];
+        for (int i = 0; i < midiKeys.length; i++)
+            transposedMidiKeys[i] = getMidiKey(i);
+        return transposedMidiKeys;
+    }
+
+    /**
+     * Returns this chord transposed by a certain amount of semitones. The new chord shares its notes with this chord.
+     * @param semitones The number of semitones to transpose the chord by.
+     * @return The transposed chord
+     * @throws IllegalArgumentException If a midi key of the transposed chord is not between 0 and 127.
+     */
+    public ImmutableChord transpose(byte semitones) throws IllegalArgumentException {
+        if (lowestMidiKey + transposition + semitones < 0 || highestMidiKey + transposition + semitones > 127)
+            throw new IllegalArgumentException("A midiKey of this chord is more than 127 or it is less than 0 and so it is out of range.");
+        return shift(semitones);
+    }
+
+    /**
+     * Returns this chord shifted by the desired amount of octaves. The new chord shares its notes with this chord.
+     * @param nbOfOctaveToShift The number of octave to shift the chord by
+     * @return The shifted chord
+     * @throws IllegalArgumentException If a midi key of the shifted chord is not between 0 and 127.
+     */
+    public ImmutableChord octaveShift(byte nbOfOctaveToShift) throws IllegalArgumentException { return transpose((byte) (nbOfOctaveToShift * 12)); }
+
+    /**
+     * Returns this chord transposed without checking that its notes stay in range, for chords that are only stored.
+     * @param semitones The number of semitones to transpose the chord by.
+     * @return The transposed chord
+     */
+    ImmutableChord shift(int semitones) { return semitones == 0 ? this : new ImmutableChord(this, transposition + semitones); }
+
+    /**
+     * Gets the lowest transposed midi key of this chord, even if it is out of range
+     * @return The lowest transposed midi key of this chord
+     */
+    int lowestMidiKey() { return lowestMidiKey + transposition; }
+
+    /**
+     * Gets the highest transposed midi key of this chord, even if it is out of range
+     * @return The highest transposed midi key of this chord
+     */
+    int highestMidiKey() { return highestMidiKey + transposition; }
+
+    /**
+     * Returns this chord with an octave shift on certain notes depending on the rootNoteIndex number.
+     * @param rootNoteIndex The number of notes starting from the first note to shift by one octave. In other words, the new root note
+     * @throws IllegalArgumentException If the rootNoteIndex number is not between 0 and the chord length.
+     * @return The inverted chord
+     */
+    public ImmutableChord invertChord(int rootNoteIndex) throws IllegalArgumentException {
+        if (rootNoteIndex > midiKeys.length || rootNoteIndex < 0)
+            throw new IllegalArgumentException("The number of inversion this chord has is " + midiKeys.length);
+        byte[] newMidiKeys = transposedMidiKeys(midiKeys.length);
+        for (int i = 0; i < rootNoteIndex; i++) {
+            if (newMidiKeys[i] + 12 > 127)
+                throw new IllegalArgumentException("The midiKey of this note is more than 127 or it is less than 0 and so it is out of range.");
+            newMidiKeys[i] += 12;
+        }
+        return new ImmutableChord(newMidiKeys, 0);
+    }
+
+    /**
+     * Returns a chord with two chords stacked on top of one another.
+     * @param bottomChord The chord at the bottom
+     * @param topChord The chord at the top
+     * @return A new chord with the notes of the bottom chord followed by the notes of the top chord
+     */
+    @Contract("_, _ -> new")
+    public static @NotNull ImmutableChord stackChords(@NotNull ImmutableChord bottomChord, @NotNull ImmutableChord topChord) {
+        byte[] newMidiKeys = bottomChord.transposedMidiKeys(bottomChord.size() + topChord.size());
+        for (int i = 0; i < topChord.size(); i++)
+            newMidiKeys[bottomChord.size() + i] = topChord.getMidiKey(i);
+        return new ImmutableChord(newMidiKeys, 0);
+    }
+
+    /**
+     * Checks if this chord has the same notes, in the same order, as another object
+     * @param o The other object
+     * @return True if the other object is an immutable chord with the same notes in the same order
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ImmutableChord)) return false;
+        ImmutableChord chord = (ImmutableChord) o;
+        if (size() != chord.size()) return false;
+        for (int i = 0; i < size(); i++)
+            if (getMidiKey(i) != chord.getMidiKey(i)) return false;
+        return true;
+    }
+
+    /**
+     * Gets the hash code of this chord, based on its notes
+     * @return The hash code of this chord
+     */
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size(); i++)
+            hash = 31 * hash + getMidiKey(i);
+        return hash;
+    }
+
+    /**
+     * Gets the string representation of the chord, with its notes from the lowest to the highest
+     * @return The string representation of the chord
+     */
+    @Override
+    public String toString() {
+        byte[] sortedMidiKeys = midiKeys.clone();
+        Arrays.sort(sortedMidiKeys);
+        var string = new StringBuilder("Chord: [");
+        for (byte midiKey : sortedMidiKeys)
+            string.append(new Note((byte) (midiKey + transposition)).getPitch()).append(", ");
+        string.setLength(string.length() - 2);
+        return string.append("]").toString();
+    }
+}
@@ -0,0 +1,231 @@
+package com.JScore;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This is the immutable version of the {@link ChordProgression}.
+ * Every operation returns a new chord progression and leaves this one untouched, so a chord progression can be shared between threads without copying it.
+ * Chord progressions share their chords with the progressions they are created from:
+ * adding a chord at the end only copies the chords when another chord was already added to the same progression,
+ * and transposing a progression is constant time, since the transposition is applied when a chord is read.
+ */
+public final class ImmutableChordProgression {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final ImmutableKey key;
+    private final Chords chords;
+    private final int size;
+    private final int transposition;
+    private final int lowestMidiKey;
+    private final int highestMidiKey;
+
+    /**
+     * Create a new empty immutable chord progression with the specified key.
+     * @param key The key of the chord progression.
+     */
+    public ImmutableChordProgression(@NotNull ImmutableKey key) {
+        this(key, new Chords(new ImmutableChord[INITIAL_CAPACITY], 0), 0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE);
+    }
+
+    private ImmutableChordProgression(ImmutableKey key, Chords chords, int size, int transposition, int lowestMidiKey, int highestMidiKey) {
+        this.key = key;
+        this.chords = chords;
+        this.size = size;
+        this.transposition = transposition;
+        this.lowestMidiKey = lowestMidiKey;
+        this.highestMidiKey = highestMidiKey;
+    }
+
+    /**
+     * Creates an immutable chord progression with the same key and chords as a chord progression.
+     * @param chordProgression The chord progression to copy
+     * @return The immutable chord progression
+     */
+    public static @NotNull ImmutableChordProgression of(@NotNull ChordProgression chordProgression) {
+        ImmutableChordProgression immutable = new ImmutableChordProgression(ImmutableKey.of(chordProgression.getKey()));
+        for (Chord chord : chordProgression.getChords())
+            immutable = immutable.addAChord(ImmutableChord.of(chord));
+        return immutable;
+    }
+
+    /**
+     * Creates a mutable chord progression with the same key and chords as this chord progression.
+     * @return The new chord progression
+     */
+    public @NotNull ChordProgression toChordProgression() {
+        ChordProgression chordProgression = new ChordProgression(key.toKey());
+        for (int i = 0; i < size; i++)
+            chordProgression.addAChord(getChord(i).toChord());
+        return chordProgression;
+    }
+
+    /**
+     * Returns a chord progression with a chord added at the end of this one.
+     * The new chord progression shares its chords with this one, unless a chord was already added to this one.
+     * @param chord The chord to add to the progression.
+     * @return The new chord progression.
+     */
+    public ImmutableChordProgression addAChord(@NotNull ImmutableChord chord) {
+        // The chords are stored without the transposition of the progression, which is applied when they are read
+        ImmutableChord stored = chord.shift(-transposition);
+        Chords newChords = chords;
+        if (size == chords.array.length || !chords.claimed.compareAndSet(size, size + 1)) {
+            newChords = new Chords(Arrays.copyOf(chords.array, Math.max(INITIAL_CAPACITY, size * 2)), size + 1);
+        }
+        newChords.array[size] = stored;
+        return new ImmutableChordProgression(key, newChords, size + 1, transposition,
+                Math.min(lowestMidiKey, stored.lowestMidiKey()), Math.max(highestMidiKey, stored.highestMidiKey()));
+    }
+
+    /**
+     * Returns a chord progression with the chord of the specified degree in the key of this chord progression added at the end.
+     * @param degree The degree of the key. This will be the root note of the chord.
+     * @return The new chord progression.
+     * @throws IllegalArgumentException If the key is chromatic or if the scale degree is not between 1 and the number of degrees of the key
+     */
+    public ImmutableChordProgression addChordBasedOnScaleDegree(int degree) throws IllegalArgumentException { return addAChord(key.getChordByDegree(degree)); }
+
+    /**
+     * Returns a chord progression with a major chord added at the end.
+     * @param rootNote RootNote of the major chord
+     * @return The new chord progression.
+     */
+    public ImmutableChordProgression addMajorChord(@NotNull Note rootNote) { return addAChord(new ImmutableChord(rootNote).appendMajorChord()); }
+
+    /**
+     * Returns a chord progression with a minor chord added at the end.
+     * @param rootNote RootNote of the minor chord
+     * @return The new chord progression.
+     */
+    public ImmutableChordProgression addMinorChord(@NotNull Note rootNote) { return addAChord(new ImmutableChord(rootNote).appendMinorChord()); }
+
+    /**
+     * Returns a chord progression with a chord replaced by another chord. This copies the chords of the progression.
+     * @param index The index the chord is at.
+     * @param chord The new chord.
+     * @return The new chord progression.
+     * @throws IndexOutOfBoundsException If the index is out of bounds.
+     */
+    public ImmutableChordProgression setChord(int index, @NotNull ImmutableChord chord) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("There are " + size + " chords in this chord progression, there is no chord at index " + index + "!");
+        ImmutableChord[] newArray = Arrays.copyOf(chords.array, chords.array.length);
+        newArray[index] = chord.shift(-transposition);
+        int lowest = Integer.MAX_VALUE, highest = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            lowest = Math.min(lowest, newArray[i].lowestMidiKey());
+            highest = Math.max(highest, newArray[i].highestMidiKey());
+        }
+        return new ImmutableChordProgression(key, new Chords(newArray, size), size, transposition, lowest, highest);
+    }
+
+    /**
+     * Returns this chord progression transposed by the number of semitones. This takes constant time and shares the chords of this progression.
+     * @param semitones The number of semitones to transpose the chord progression by.
+     * @return The transposed chord progression.
+     * @throws IllegalArgumentException If a midi key of the transposed chord progression is not between 0 and 127.
+     */
+    public ImmutableChordProgression transpose(byte semitones) throws IllegalArgumentException {
+        if (size > 0 && (lowestMidiKey + transposition + semitones < 0 || highestMidiKey + transposition + semitones > 127))
+            throw new IllegalArgumentException("A midiKey of this chord progression is more than 127 or it is less than 0 and so it is out of range.");
+        return new ImmutableChordProgression(key.transpose(semitones), chords, size, transposition + semitones, lowestMidiKey, highestMidiKey);
+    }
+
+    /**
+     * Returns this chord progression shifted by the desired amount of octaves.
+     * @param nbOfOctaveToShift The number of octave to shift the chord progression by
+     * @return The shifted chord progression.
+     * @throws IllegalArgumentException If a midi key of the shifted chord progression is not between 0 and 127.
+     */
+    public ImmutableChordProgression octaveShift(byte nbOfOctaveToShift) throws IllegalArgumentException { return transpose((byte) (nbOfOctaveToShift * 12)); }
+
+    /**
+     * Gets a chord of this chord progression.
+     * @param index The index of the chord
+     * @return The chord
+     * @throws IndexOutOfBoundsException If the index is out of bounds.
+     */
+    public @NotNull ImmutableChord getChord(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("There are " + size + " chords in this chord progression, there is no chord at index " + index + "!");
+        return chords.array[index].shift(transposition);
+    }
+
+    /**
+     * Gets the chords of this chord progression.
+     * @return An unmodifiable list of the chords of this chord progression
+     */
+    public @NotNull List<ImmutableChord> getChords() {
+        return new AbstractList<>() {
+            @Override
+            public ImmutableChord get(int index) { return getChord(index); }
+
+            @Override
+            public int size() { return size; }
+        };
+    }
+
+    /**
+     * Gets the number of chords of this chord progression
+     * @return The number of chords of this chord progression
+     */
+    public int size() { return size; }
+
+    /**
+     * Gets the key associated with this chord progression
+     * @return The key associated with this chord progression
+     */
+    public ImmutableKey getKey() { return key; }
+
+    /**
+     * Checks if this chord progression has the same key and chords as another object
+     * @param o The other object
+     * @return True if the other object is an immutable chord progression with the same key and chords
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ImmutableChordProgression)) return false;
+        ImmutableChordProgression chordProgression = (ImmutableChordProgression) o;
+        return key.equals(chordProgression.key) && getChords().equals(chordProgression.getChords());
+    }
+
+    /**
+     * Gets the hash code of this chord progression, based on its key and chords
+     * @return The hash code of this chord progression
+     */
+    @Override
+    public int hashCode() { return 31 * key.hashCode() + getChords().hashCode(); }
+
+    /**
+     * Gets the string representation of this chord progression
+     * @return The string representation of this chord progression
+     */
+    @Override
+    public String toString() {
+        var string = new StringBuilder("Chord progression: [").append("Key: ").append(key);
+        for (int i = 0; i < size; i++)
+            string.append(", ").append(getChord(i));
+        return string.append("]").toString();
+    }
+
+    /**
+     * This is the array of chords shared between chord progressions, with the number of its slots that are already taken.
+     * A progression can only add its chord in the shared array if it is the first one to claim the next slot.
+     */
+    private static final class Chords {
+        private final ImmutableChord[] array;
+        private final AtomicInteger claimed;
+
+        private Chords(ImmutableChord[] array, int claimed) {
+            this.array = array;
+            this.claimed = new AtomicInteger(claimed);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.JScore;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This is the immutable version of the {@link Key}.
+ * Every operation returns a new key and leaves this one untouched, so a key can be shared between threads without copying it.
+ * The key only stores its mode and the midi key of its tonic, since the chords of each degree are already computed by the {@link Mode}.
+ */
+public final class ImmutableKey {
+
+    private final Mode mode;
+    private final byte tonic;
+
+    /**
+     * Creates a new immutable key with the inputted mode and tonic note
+     * @param mode The mode of the key
+     * @param tonic The tonic note of the key
+     */
+    public ImmutableKey(@NotNull Mode mode, @NotNull Note tonic) { this(mode, tonic.getMidiKey()); }
+
+    private ImmutableKey(@NotNull Mode mode, byte tonic) {
+        this.mode = mode;
+        this.tonic = tonic;
+    }
+
+    /**
+     * Creates an immutable key with the same mode and tonic as a key.
+     * @param key The key to copy
+     * @return The immutable key
+     */
+    public static @NotNull ImmutableKey of(@NotNull Key key) { return new ImmutableKey(key.getMode(), key.getTonic().getMidiKey()); }
+
+    /**
+     * Creates a mutable key with the same mode and tonic as this key.
+     * @return The new key
+     */
+    public @NotNull Key toKey() { return new Key(mode, getTonic()); }
+
+    /**
+     * Returns this key transposed by a certain amount of semitones.
+     * @param semitones The number of semitones to transpose the key by.
+     * @return The transposed key
+     * @throws IllegalArgumentException If the midi key of the transposed tonic is not between 0 and 127.
+     */
+    public ImmutableKey transpose(byte semitones) throws IllegalArgumentException {
+        if (tonic + semitones > 127 || tonic + semitones < 0)
+            throw new IllegalArgumentException("The midiKey of this note is more than 127 or it is less than 0 and so it is out of range.");
+        return new ImmutableKey(mode, (byte) (tonic + semitones));
+    }
+
+    /**
+     * Returns this key shifted by the desired amount of octaves.
+     * @param nbOfOctaveToShift The number of octave to shift the key by
+     * @return The shifted key
+     * @throws IllegalArgumentException If the midi key of the shifted tonic is not between 0 and 127.
+     */
+    public ImmutableKey octaveShift(byte nbOfOctaveToShift) throws IllegalArgumentException { return transpose((byte) (nbOfOctaveToShift * 12)); }
+
+    /**
+     * Gets the chord at the specified degree of this key
+     * @param degree The degree of the chord
+     * @return The chord at the specified degree of this key
+     * @throws IllegalArgumentException If the mode of this key is the chromatic mode or the degree is bigger than the length of the scale or smaller than 0
+     */
+    public @NotNull ImmutableChord getChordByDegree(int degree) throws IllegalArgumentException {
+        checkDegree(degree);
+        return buildChord(mode.triads()[degree - 1]);
+    }
+
+    /**
+     * Gets the seventh chord at the specified degree of this key
+     * @param degree The degree of the seventh chord
+     * @return The seventh chord at the specified degree of this key
+     * @throws IllegalArgumentException If the mode of this key is the chromatic mode or the degree is bigger than the length of the scale or smaller than 0
+     */
+    public @NotNull ImmutableChord getSeventhChordByDegree(int degree) throws IllegalArgumentException {
+        checkDegree(degree);
+        return buildChord(mode.seventhChords()[degree - 1]);
+    }
+
+    private void checkDegree(int degree) throws IllegalArgumentException {
+        if (mode == Mode.Chromatic)
+            throw new IllegalArgumentException("You cannot harmonize the chromatic scale! At least I do not know how.");
+        if (degree < 1 || degree > mode.getNbOfDegrees())
+            throw new IllegalArgumentException("There are " + mode.getNbOfDegrees() +  " degrees in the " + getTonic().getPitch()  + " " + mode + ", from 1 to " + mode.getNbOfDegrees() + "!");
+    }
+
+    private @NotNull ImmutableChord buildChord(int @NotNull [] intervals) throws IllegalArgumentException {
+        byte[] midiKeys = new byte[intervals.length];
+        for (int i = 0; i < intervals.length; i++) {
+            if (tonic + intervals[i] > 127)
+                throw new IllegalArgumentException("The midiKey of this note is more than 127 or it is less than 0 and so it is out of range.");
+            midiKeys[i] = (byte) (tonic + intervals[i]);
+        }
+        return new ImmutableChord(midiKeys, 0);
+    }
+
+    /**
+     * Gets the mode object of this key
+     * @return The mode object of this key
+     */
+    public Mode getMode() { return mode; }
+
+    /**
+     * Gets the tonic note of this key
+     * @return A new note object with the midi key of the tonic of this key
+     */
+    public @NotNull Note getTonic() { return new Note(tonic); }
+
+    /**
+     * Gets the midi key of the tonic of this key
+     * @return The midi key of the tonic of this key
+     */
+    public byte getTonicMidiKey() { return tonic; }
+
+    /**
+     * Checks if this key has the same mode and tonic as another object
+     * @param o The other object
+     * @return True if the other object is an immutable key with the same mode and tonic
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ImmutableKey)) return false;
+        ImmutableKey key = (ImmutableKey) o;
+        return tonic == key.tonic && mode == key.mode;
+    }
+
+    /**
+     * Gets the hash code of this key, based on its mode and tonic
+     * @return The hash code of this key
+     */
+    @Override
+    public int hashCode() { return 31 * mode.hashCode() + tonic; }
+
+    /**
+     * Gets a string representation of this key
+     * @return The string representation of this key
+     */
+    @Override
+    public String toString() { return "Key: [mode: " + mode + ", tonic: " + getTonic() + ']'; }
+}
@@ -40,11 +40,27 @@ public class Key extends NoteTransformation {
      * @throws IllegalArgumentException If the mode of this key is the chromatic mode or the degree is bigger than the length of the scale or smaller than 0
      */
     public Chord getChordByDegree(int degree) throws IllegalArgumentException {
+        checkDegree(degree);
+        return scale.getScaleChords().getChords().get(degree - 1);
+    }
+
+    /**
+     * Gets the seventh chord at the specified degree of this scale
+     * @param degree The degree of the seventh chord
+     * @return The seventh chord at the specified degree of this scale
+     * @throws IllegalArgumentException If the mode of this key is the chromatic mode, the degree is bigger than the length of the scale or smaller than 0
+     * or a note of the seventh chord is above the highest midi key
+     */
+    public Chord getSeventhChordByDegree(int degree) throws IllegalArgumentException {
+        checkDegree(degree);
+        return scale.getScaleSeventhChord(degree);
+    }
+
+    private void checkDegree(int degree) throws IllegalArgumentException {
         if (mode == Mode.Chromatic)
             throw new IllegalArgumentException("You cannot harmonize the chromatic scale! At least I do not know how.");
-        if (degree < 1 || degree > scale.getScaleNotes().size())
-            throw new IllegalArgumentException("There are " + (scale.getScaleNotes().size() - 1) +  " degrees in the " + tonic.getPitch()  + " " + mode + ", from 1 to " + (scale.getScaleNotes().size() - 1) + "!");
-        return scale.getScaleChords().getChords().get(degree - 1);
+        if (degree < 1 || degree > mode.getNbOfDegrees())
+            throw new IllegalArgumentException("There are " + mode.getNbOfDegrees() +  " degrees in the " + tonic.getPitch()  + " " + mode + ", from 1 to " + mode.getNbOfDegrees() + "!");
     }
 
     /**
@@ -0,0 +1,218 @@
+package com.JScore;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Transmitter;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This records live midi input into a song.
+ * The recorder is a midi receiver, so it can be plugged into any transmitter, like a midi keyboard, or be sent messages directly.
+ * The note on and note off messages are packed into longs and put in a lock-free ring buffer,
+ * so the thread sending the messages never blocks nor allocates memory.
+ * A consumer thread takes the messages out of the buffer and pairs the note on and note off messages into the midi notes of the song.
+ * Messages need to be sent by a single thread at a time, which is what midi transmitters do.
+ * The song should only be read once the recording is stopped.
+ * The first recorded message is at tick 0 of the song.
+ */
+public class MidiRecorder implements Receiver {
+
+    private static final long TIMESTAMP_MASK = (1L << 40) - 1;
+    private static final long POLL_INTERVAL_NANOS = 1_000_000;
+    private static final int NO_PENDING_NOTE = -1;
+
+    private final Song song;
+    private final double ticksPerMicrosecond;
+
+    private final long[] ring;
+    private final int ringMask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong overrunCount = new AtomicLong();
+    private final AtomicInteger sendingCount = new AtomicInteger();
+    private volatile long droppedNoteCount;
+    private volatile boolean recording;
+    private Thread consumer;
+
+    // Only used by the consumer thread, then by the thread stopping the recording once the consumer thread is done
+    private final long[] pendingStartTicks = new long[16 * 128];
+    private final int[] pendingVelocities = new int[16 * 128];
+    private boolean hasFirstTimestamp;
+    private long firstTimestamp;
+    private long lastTick;
+
+    /**
+     * Creates a new recorder that records into a song.
+     * @param song The song to record into
+     * @param beatsPerMinute The tempo used to convert the time of the messages into midi ticks
+     * @param capacity The number of messages the ring buffer can hold, which will be rounded up to a power of two
+     * @throws IllegalArgumentException If the tempo or the capacity is not a positive number
+     */
+    public MidiRecorder(@NotNull Song song, double beatsPerMinute, int capacity) throws IllegalArgumentException {
+        if (beatsPerMinute <= 0 || capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("The tempo and the capacity of the recorder need to be positive numbers!");
+        this.song = song;
+        this.ticksPerMicrosecond = song.getResolution() * beatsPerMinute / 60_000_000.0;
+        int ringSize = 1;
+        while (ringSize < capacity) ringSize <<= 1;
+        this.ring = new long[ringSize];
+        this.ringMask = ringSize - 1;
+        Arrays.fill(pendingStartTicks, NO_PENDING_NOTE);
+    }
+
+    /**
+     * Starts the recording, which starts the consumer thread.
+     * @throws IllegalStateException If the recorder is already recording
+     */
+    public synchronized void start() throws IllegalStateException {
+        if (recording)
+            throw new IllegalStateException("The recorder is already recording!");
+        recording = true;
+        consumer = new Thread(this::consume, "JScore midi recorder");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Sets this recorder as the receiver of a transmitter and starts the recording.
+     * @param transmitter The transmitter to record
+     * @throws IllegalStateException If the recorder is already recording
+     */
+    public void record(@NotNull Transmitter transmitter) throws IllegalStateException {
+        transmitter.setReceiver(this);
+        start();
+    }
+
+    /**
+     * Stops the recording and waits for every message in the buffer to be added to the song.
+     * Messages that are being sent while the recording stops are waited for, so they are either recorded or ignored, never lost.
+     * Notes that are still held are ended at the tick of the last recorded message.
+     * @throws InterruptedException If the thread is interrupted while waiting for the consumer thread
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (!recording) return;
+        recording = false;
+        consumer.join();
+        // A message that was accepted before the recording stopped can still be put in the buffer after the consumer thread is done
+        while (sendingCount.get() != 0) Thread.onSpinWait();
+        drain();
+        for (int i = 0; i < pendingStartTicks.length; i++)
+            if (pendingStartTicks[i] != NO_PENDING_NOTE) endNote(i, lastTick);
+    }
+
+    /**
+     * Puts a note on or note off message in the ring buffer. Other messages are ignored, as well as messages sent while not recording.
+     * If the buffer is full, the message is lost and the overrun count goes up.
+     * @param message The midi message
+     * @param timeStamp The time of the message in microseconds, or -1 to use the time at which it is received
+     */
+    @Override
+    public void send(MidiMessage message, long timeStamp) {
+        if (!(message instanceof ShortMessage)) return;
+        ShortMessage sm = (ShortMessage) message;
+        if (sm.getCommand() != ShortMessage.NOTE_ON && sm.getCommand() != ShortMessage.NOTE_OFF) return;
+
+        // The count is raised before checking if the recorder is recording, so stop() either sees it or this sees that the recording stopped
+        sendingCount.incrementAndGet();
+        try {
+            if (!recording) return;
+            long position = tail.get();
+            if (position - head.get() > ringMask) {
+                overrunCount.incrementAndGet();
+                return;
+            }
+            long time = timeStamp == -1 ? System.nanoTime() / 1000 : timeStamp;
+            ring[(int) (position & ringMask)] = (time & TIMESTAMP_MASK) << 24 | (long) sm.getStatus() << 16 | sm.getData1() << 8 | sm.getData2();
+            tail.lazySet(position + 1);
+        } finally {
+            sendingCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stops the recording. If the thread is interrupted while waiting, its interrupted status is set back.
+     */
+    @Override
+    public void close() {
+        try {
+            stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of messages lost because the ring buffer was full
+     * @return The number of messages lost because the ring buffer was full
+     */
+    public long getOverrunCount() { return overrunCount.get(); }
+
+    /**
+     * Gets the number of note off messages that were dropped because no note on message matched them
+     * @return The number of note off messages that were dropped
+     */
+    public long getDroppedNoteCount() { return droppedNoteCount; }
+
+    /**
+     * Gets the song this recorder records into
+     * @return The song this recorder records into
+     */
+    public Song getSong() { return song; }
+
+    /**
+     * Takes the messages out of the buffer until the recording is stopped.
+     * The last messages are taken out by the thread stopping the recording.
+     */
+    private void consume() {
+        while (recording)
+            if (!drain()) LockSupport.parkNanos(POLL_INTERVAL_NANOS);
+    }
+
+    /**
+     * Takes every message currently in the buffer and adds them to the song.
+     * @return True if at least one message was taken
+     */
+    private boolean drain() {
+        long position = head.get(), end = tail.get();
+        if (position == end) return false;
+        for (; position < end; position++) {
+            long packed = ring[(int) (position & ringMask)];
+            long timestamp = packed >>> 24;
+            if (!hasFirstTimestamp) {
+                firstTimestamp = timestamp;
+                hasFirstTimestamp = true;
+            }
+            lastTick = Math.max(lastTick, (long) (((timestamp - firstTimestamp) & TIMESTAMP_MASK) * ticksPerMicrosecond));
+
+            int status = (int) (packed >>> 16) & 0xFF, midiKey = (int) (packed >>> 8) & 0x7F, velocity = (int) packed & 0x7F;
+            int index = (status & 0x0F) * 128 + midiKey;
+            if ((status & 0xF0) == ShortMessage.NOTE_ON && velocity > 0) {
+                // A note that is played again before being released is ended first
+                if (pendingStartTicks[index] != NO_PENDING_NOTE) endNote(index, lastTick);
+                pendingStartTicks[index] = lastTick;
+                pendingVelocities[index] = velocity;
+            } else if (pendingStartTicks[index] != NO_PENDING_NOTE)
+                endNote(index, lastTick);
+            else
+                droppedNoteCount++;
+        }
+        head.lazySet(position);
+        return true;
+    }
+
+    /**
+     * Adds a held note to the song.
+     * @param index The index of the note in the pending notes, which is its channel times 128 plus its midi key
+     * @param endTick The end tick of the note
+     */
+    private void endNote(int index, long endTick) {
+        song.addNote(new MidiNote(new Note((byte) (index % 128)), pendingStartTicks[index], endTick, pendingVelocities[index]));
+        pendingStartTicks[index] = NO_PENDING_NOTE;
+    }
+}
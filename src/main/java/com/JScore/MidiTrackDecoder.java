@@ -0,0 +1,226 @@
+package com.JScore;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.sound.midi.InvalidMidiDataException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This decodes the notes of a standard midi file without going through the java.sound.midi package, one track per task.
+ * The file is memory mapped, the offsets of its track chunks are found by scanning the chunk headers,
+ * then each track chunk is decoded on a fork join pool into its own buffer of notes, sorted by their start tick.
+ * Note on and note off messages are paired per channel and midi key, in the order they are played.
+ * A note on message with a velocity of 0 is a note off message, and notes that are never released are left out.
+ */
+final class MidiTrackDecoder {
+
+    private static final int MTHD = 0x4D546864;
+    private static final int MTRK = 0x4D54726B;
+
+    private final ByteBuffer data;
+    private final int resolution;
+    private final int[] trackOffsets;
+    private final int[] trackLengths;
+
+    /**
+     * Memory maps a midi file and indexes its track chunks.
+     * @param midiFile The midi file to decode
+     * @throws InvalidMidiDataException If the file is not a standard midi file
+     * @throws IOException If an I/O exception occurs
+     */
+    MidiTrackDecoder(@NotNull File midiFile) throws InvalidMidiDataException, IOException {
+        try (FileChannel channel = FileChannel.open(midiFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new InvalidMidiDataException("The midi file is too big to be decoded!");
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.limit() < 14 || data.getInt(0) != MTHD || data.getInt(4) < 6)
+            throw new InvalidMidiDataException("The file does not start with a midi header chunk!");
+        int division = data.getShort(12) & 0xFFFF;
+        // Like Sequence.getResolution, SMPTE based files use their number of ticks per frame
+        resolution = (division & 0x8000) == 0 ? division : division & 0xFF;
+
+        List<int[]> tracks = new ArrayList<>();
+        for (long offset = 8L + data.getInt(4); offset + 8 <= data.limit(); ) {
+            long length = data.getInt((int) offset + 4) & 0xFFFFFFFFL;
+            if (offset + 8 + length > data.limit())
+                throw new InvalidMidiDataException("The chunk at byte " + offset + " goes past the end of the file!");
+            if (data.getInt((int) offset) == MTRK) tracks.add(new int[] {(int) offset + 8, (int) length});
+            offset += 8 + length;
+        }
+        trackOffsets = tracks.stream().mapToInt(track -> track[0]).toArray();
+        trackLengths = tracks.stream().mapToInt(track -> track[1]).toArray();
+    }
+
+    /**
+     * Gets the resolution of the midi file
+     * @return The number of midi ticks in 1 quarter note (1 beat)
+     */
+    int getResolution() { return resolution; }
+
+    /**
+     * Decodes every track of the midi file concurrently.
+     * @param pool The pool to decode the tracks on
+     * @return The notes of each track, sorted by their start tick
+     * @throws InvalidMidiDataException If a track is invalid
+     */
+    MidiNote[][] decodeTracks(@NotNull ForkJoinPool pool) throws InvalidMidiDataException {
+        TrackTask[] tasks = new TrackTask[trackOffsets.length];
+        for (int i = 0; i < tasks.length; i++)
+            tasks[i] = new TrackTask(trackOffsets[i], trackLengths[i]);
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() { ForkJoinTask.invokeAll(tasks); }
+        });
+
+        MidiNote[][] notes = new MidiNote[tasks.length][];
+        for (int i = 0; i < tasks.length; i++) {
+            if (tasks[i].error != null) throw tasks[i].error;
+            notes[i] = tasks[i].notes;
+        }
+        return notes;
+    }
+
+    /**
+     * This task decodes one track chunk into primitive note buffers, then into midi notes.
+     */
+    private final class TrackTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private int position;
+        private MidiNote[] notes;
+        private InvalidMidiDataException error;
+
+        // The notes of the track, in the order they are played. An end tick of -1 means the note is still held.
+        private long[] startTicks = new long[64];
+        private long[] endTicks = new long[64];
+        private byte[] midiKeys = new byte[64];
+        private byte[] velocities = new byte[64];
+        private int nbOfNotes;
+
+        // The held notes of each channel and midi key, as linked queues of note indexes
+        private final int[] firstHeldNotes = new int[16 * 128];
+        private final int[] lastHeldNotes = new int[16 * 128];
+        private int[] nextHeldNotes = new int[64];
+
+        private TrackTask(int start, int length) {
+            this.start = start;
+            this.end = start + length;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                decode();
+            } catch (InvalidMidiDataException e) {
+                error = e;
+            }
+        }
+
+        private void decode() throws InvalidMidiDataException {
+            Arrays.fill(firstHeldNotes, -1);
+            position = start;
+            long tick = 0;
+            int runningStatus = 0;
+            while (position < end) {
+                tick += readVariableLengthQuantity();
+                int status = readByte();
+                if (status == 0xFF) {
+                    int type = readByte();
+                    int length = readVariableLengthQuantity();
+                    skip(length);
+                    runningStatus = 0;
+                    if (type == 0x2F) break;
+                } else if (status == 0xF0 || status == 0xF7) {
+                    skip(readVariableLengthQuantity());
+                    runningStatus = 0;
+                } else {
+                    int data1;
+                    if ((status & 0x80) != 0) {
+                        runningStatus = status;
+                        data1 = readByte();
+                    } else if (runningStatus != 0) {
+                        data1 = status;
+                        status = runningStatus;
+                    } else
+                        throw new InvalidMidiDataException("There is a data byte without a status at byte " + (position - 1) + "!");
+
+                    int command = status & 0xF0;
+                    int data2 = command == 0xC0 || command == 0xD0 ? 0 : readByte();
+                    int index = (status & 0x0F) * 128 + (data1 & 0x7F);
+                    if (command == 0x90 && data2 > 0) holdNote(index, tick, data2);
+                    else if (command == 0x80 || command == 0x90) releaseNote(index, tick);
+                }
+            }
+            toMidiNotes();
+        }
+
+        private void holdNote(int index, long tick, int velocity) {
+            if (nbOfNotes == startTicks.length) {
+                startTicks = Arrays.copyOf(startTicks, nbOfNotes * 2);
+                endTicks = Arrays.copyOf(endTicks, nbOfNotes * 2);
+                midiKeys = Arrays.copyOf(midiKeys, nbOfNotes * 2);
+                velocities = Arrays.copyOf(velocities, nbOfNotes * 2);
+                nextHeldNotes = Arrays.copyOf(nextHeldNotes, nbOfNotes * 2);
+            }
+            startTicks[nbOfNotes] = tick;
+            endTicks[nbOfNotes] = -1;
+            midiKeys[nbOfNotes] = (byte) (index % 128);
+            velocities[nbOfNotes] = (byte) velocity;
+            nextHeldNotes[nbOfNotes] = -1;
+            if (firstHeldNotes[index] == -1) firstHeldNotes[index] = nbOfNotes;
+            else nextHeldNotes[lastHeldNotes[index]] = nbOfNotes;
+            lastHeldNotes[index] = nbOfNotes++;
+        }
+
+        private void releaseNote(int index, long tick) {
+            int note = firstHeldNotes[index];
+            if (note == -1) return; // There is no note on message that corresponds to this note off message
+            endTicks[note] = tick;
+            firstHeldNotes[index] = nextHeldNotes[note];
+        }
+
+        private void toMidiNotes() {
+            int nbOfReleasedNotes = 0;
+            for (int i = 0; i < nbOfNotes; i++)
+                if (endTicks[i] != -1) nbOfReleasedNotes++;
+            notes = new MidiNote[nbOfReleasedNotes];
+            for (int i = 0, j = 0; i < nbOfNotes; i++)
+                if (endTicks[i] != -1) notes[j++] = new MidiNote(new Note(midiKeys[i]), startTicks[i], endTicks[i], velocities[i]);
+        }
+
+        private int readByte() throws InvalidMidiDataException {
+            if (position >= end)
+                throw new InvalidMidiDataException("The track chunk starting at byte " + start + " ends in the middle of an event!");
+            return data.get(position++) & 0xFF;
+        }
+
+        private int readVariableLengthQuantity() throws InvalidMidiDataException {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int b = readByte();
+                value = (value << 7) | (b & 0x7F);
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new InvalidMidiDataException("There is a variable length quantity longer than 4 bytes at byte " + position + "!");
+        }
+
+        private void skip(int length) throws InvalidMidiDataException {
+            if (length > end - position)
+                throw new InvalidMidiDataException("The track chunk starting at byte " + start + " ends in the middle of an event!");
+            position += length;
+        }
+    }
+}
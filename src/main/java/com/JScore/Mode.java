@@ -1,68 +1,245 @@
 package com.JScore;
 
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
- * This is an enum containing the 7 modes of the major scale and 4 extra modes being major, harmonic minor, natural minor and chromatic.
+ * This represents a mode in music.
+ * There are constants for the 7 modes of the major scale, the major, natural minor, harmonic minor and melodic minor scales,
+ * the major and minor pentatonic scales, the blues scale and the chromatic scale.
  * Pick chromatic if your song/chordProgression has no key.
- * Also, there is no minor harmonic cause not clear when you actually go down.
+ * You can also create your own modes from an interval mask or from the steps between their notes.
+ * A mode is stored as an interval mask, where bit i is set if the note i semitones above the tonic is in the mode.
+ * The triads and seventh chords of every degree are derived by stacking thirds within the mode, once, when the mode is created.
+ * Modes cannot be modified, so they can be shared.
+ * Mode used to be an enum and is now a class, so that new modes can be created. The constants, {@link #values()}, {@link #valueOf(String)}
+ * and {@link #name()} work as before, but modes can no longer be used in a switch, in an EnumSet or an EnumMap,
+ * they have no ordinal and cannot be compared with compareTo, and they are not serializable.
  */
-public enum Mode {
+public final class Mode {
 
     /**
      * The major scale
      */
-    Ionian(List.of(2,2,1,2,2,2,1)),
+    public static final Mode Ionian = fromSteps("Ionian", 2,2,1,2,2,2,1);
     /**
      * The major scale with flat 3 and 7
      */
-    Dorian(List.of(2,1,2,2,2,1,2)),
+    public static final Mode Dorian = fromSteps("Dorian", 2,1,2,2,2,1,2);
     /**
      * The major scale with flat 2, 3, 6 and 7
      */
-    Phrygian(List.of(1,2,2,2,1,2,2)),
+    public static final Mode Phrygian = fromSteps("Phrygian", 1,2,2,2,1,2,2);
     /**
      * The major scale with sharp 4
      */
-    Lydian(List.of(2,2,2,1,2,2,1)),
+    public static final Mode Lydian = fromSteps("Lydian", 2,2,2,1,2,2,1);
     /**
      * The major scale with flat 7
      */
-    Mixolydian(List.of(2,2,1,2,2,1,2)),
+    public static final Mode Mixolydian = fromSteps("Mixolydian", 2,2,1,2,2,1,2);
     /**
      * The natural minor scale or the major scale with a flat 3, 6 and 7
      */
-    Aeolian(List.of(2,1,2,2,1,2,2)),
+    public static final Mode Aeolian = fromSteps("Aeolian", 2,1,2,2,1,2,2);
     /**
      * The major scale with flat 2, 3, 5, 6 and 7
      */
-    Locrian(List.of(1,2,2,1,2,2,2)),
+    public static final Mode Locrian = fromSteps("Locrian", 1,2,2,1,2,2,2);
 
     /**
      * The normal major scale. It is the same as the Ionian mode.
      */
-    Major(List.of(2,2,1,2,2,2,1)),
+    public static final Mode Major = fromSteps("Major", 2,2,1,2,2,2,1);
     /**
      * The normal minor scale. It is the same as the Aeolian mode.
      */
-    Minor_Natural(List.of(2,1,2,2,1,2,2)), // The normal minor scale. It is the same as the Aeolian mode.
+    public static final Mode Minor_Natural = fromSteps("Minor_Natural", 2,1,2,2,1,2,2);
     /**
      * The natural minor scale with a sharp 7
      */
-    Minor_Harmonic(List.of(2,1,2,2,1,3,1)),
+    public static final Mode Minor_Harmonic = fromSteps("Minor_Harmonic", 2,1,2,2,1,3,1);
+    /**
+     * The natural minor scale with a sharp 6 and 7. This is the ascending melodic minor scale, which is also used when going down in jazz.
+     */
+    public static final Mode Minor_Melodic = fromSteps("Minor_Melodic", 2,1,2,2,2,2,1);
+    /**
+     * The major scale without the 4 and 7
+     */
+    public static final Mode Pentatonic_Major = fromSteps("Pentatonic_Major", 2,2,3,2,3);
+    /**
+     * The natural minor scale without the 2 and 6
+     */
+    public static final Mode Pentatonic_Minor = fromSteps("Pentatonic_Minor", 3,2,2,3,2);
+    /**
+     * The minor pentatonic scale with an added flat 5
+     */
+    public static final Mode Blues = fromSteps("Blues", 3,2,1,1,3,2);
     /**
      * The chromatic scale. Pick this one if your chord progression has no specific key.
      */
-    Chromatic(List.of(1,1,1,1,1,1,1,1,1,1,1,1));
+    public static final Mode Chromatic = fromSteps("Chromatic", 1,1,1,1,1,1,1,1,1,1,1,1);
+
+    private static final Mode[] VALUES = {
+            Ionian, Dorian, Phrygian, Lydian, Mixolydian, Aeolian, Locrian,
+            Major, Minor_Natural, Minor_Harmonic, Minor_Melodic, Pentatonic_Major, Pentatonic_Minor, Blues, Chromatic
+    };
+
+    private final String name;
+    private final int intervalMask;
+    private final int[] steps;
+    private final List<Integer> stepList;
+    private final int[][] triads;
+    private final int[][] seventhChords;
+
+    /**
+     * Creates a new mode from an interval mask.
+     * @param name The name of the mode
+     * @param intervalMask The interval mask of the mode, where bit i is set if the note i semitones above the tonic is in the mode
+     * @throws IllegalArgumentException If the tonic (bit 0) is not in the mask or if the mask uses more than 12 bits
+     */
+    public Mode(@NotNull String name, int intervalMask) throws IllegalArgumentException {
+        if ((intervalMask & 1) == 0 || (intervalMask >>> 12) != 0)
+            throw new IllegalArgumentException("The interval mask of a mode needs to contain the tonic (bit 0) and only use the first 12 bits!");
+        this.name = name;
+        this.intervalMask = intervalMask;
 
-    private final List<Integer> steps;
+        int nbOfDegrees = Integer.bitCount(intervalMask);
+        int[] degreeIntervals = new int[nbOfDegrees];
+        for (int interval = 0, degree = 0; interval < 12; interval++)
+            if ((intervalMask & (1 << interval)) != 0) degreeIntervals[degree++] = interval;
+        steps = new int[nbOfDegrees];
+        for (int degree = 0; degree < nbOfDegrees; degree++)
+            steps[degree] = (degree + 1 < nbOfDegrees ? degreeIntervals[degree + 1] : 12) - degreeIntervals[degree];
+        stepList = Arrays.stream(steps).boxed().collect(Collectors.toUnmodifiableList());
 
-    Mode(List<Integer> steps) { this.steps = steps; }
+        triads = new int[nbOfDegrees][];
+        seventhChords = new int[nbOfDegrees][];
+        for (int degree = 0; degree < nbOfDegrees; degree++) {
+            triads[degree] = stackThirds(degreeIntervals, degree, 3);
+            seventhChords[degree] = stackThirds(degreeIntervals, degree, 4);
+        }
+    }
+
+    /**
+     * Creates a new mode from the intervals between its notes.
+     * @param name The name of the mode
+     * @param steps The number of semitones between each note of the mode, starting from the tonic, which need to add up to 12
+     * @return The new mode
+     * @throws IllegalArgumentException If a step is not positive or if the steps do not add up to 12
+     */
+    public static @NotNull Mode fromSteps(@NotNull String name, int @NotNull ... steps) throws IllegalArgumentException {
+        int intervalMask = 0, interval = 0;
+        for (int step : steps) {
+            if (step <= 0)
+                throw new IllegalArgumentException("The steps of a mode need to be positive numbers!");
+            intervalMask |= 1 << interval;
+            interval += step;
+        }
+        if (interval != 12)
+            throw new IllegalArgumentException("The steps of a mode need to add up to 12 semitones, not " + interval + "!");
+        return new Mode(name, intervalMask);
+    }
+
+    /**
+     * Stacks thirds within the mode, which means taking every other note of the mode, starting from a degree.
+     * @param degreeIntervals The number of semitones between the tonic and each degree of the mode
+     * @param degree The degree to start from, where 0 is the tonic
+     * @param nbOfNotes The number of notes to stack
+     * @return The number of semitones between the tonic and each note of the chord, from the lowest to the highest note
+     */
+    private static int @NotNull [] stackThirds(int @NotNull [] degreeIntervals, int degree, int nbOfNotes) {
+        int[] chord = new int[nbOfNotes];
+        for (int i = 0; i < nbOfNotes; i++) {
+            int scaleIndex = degree + 2 * i;
+            chord[i] = degreeIntervals[scaleIndex % degreeIntervals.length] + 12 * (scaleIndex / degreeIntervals.length);
+        }
+        return chord;
+    }
+
+    /**
+     * Gets the constants of the modes that come with JScore.
+     * @return A new array with the modes that come with JScore, in the order they are declared
+     */
+    public static Mode @NotNull [] values() { return VALUES.clone(); }
+
+    /**
+     * Gets the mode that comes with JScore that has the specified name.
+     * @param name The name of the mode
+     * @return The mode with the specified name
+     * @throws IllegalArgumentException If no mode that comes with JScore has that name
+     */
+    public static @NotNull Mode valueOf(String name) throws IllegalArgumentException {
+        for (Mode mode : VALUES)
+            if (mode.name.equals(name)) return mode;
+        throw new IllegalArgumentException("There is no mode named " + name + "!");
+    }
+
+    /**
+     * Gets the name of this mode
+     * @return The name of this mode
+     */
+    public String name() { return name; }
+
+    /**
+     * Gets the interval mask of this mode
+     * @return The interval mask of this mode, where bit i is set if the note i semitones above the tonic is in the mode
+     */
+    public int getIntervalMask() { return intervalMask; }
+
+    /**
+     * Gets the number of degrees (notes in an octave) of this mode
+     * @return The number of degrees of this mode
+     */
+    public int getNbOfDegrees() { return steps.length; }
 
     /**
      * Gets the interval between the notes of this mode
      * @return The interval between the notes of this mode
      */
-    public List<Integer> getSteps() { return this.steps; }
+    public List<Integer> getSteps() { return stepList; }
+
+    /**
+     * Gets the triad of a degree of this mode
+     * @param degree The degree of the triad, from 1 to the number of degrees of this mode
+     * @return A new array with the number of semitones between the tonic and each note of the triad
+     * @throws ArrayIndexOutOfBoundsException If the degree is out of bounds
+     */
+    public int @NotNull [] getTriadIntervals(int degree) { return triads[degree - 1].clone(); }
+
+    /**
+     * Gets the seventh chord of a degree of this mode
+     * @param degree The degree of the seventh chord, from 1 to the number of degrees of this mode
+     * @return A new array with the number of semitones between the tonic and each note of the seventh chord
+     * @throws ArrayIndexOutOfBoundsException If the degree is out of bounds
+     */
+    public int @NotNull [] getSeventhChordIntervals(int degree) { return seventhChords[degree - 1].clone(); }
+
+    /**
+     * Gets the interval between the notes of this mode, without copying them
+     * @return The interval between the notes of this mode
+     */
+    int[] steps() { return steps; }
 
+    /**
+     * Gets the triads of every degree of this mode, without copying them
+     * @return The triads of this mode, starting from the tonic
+     */
+    int[][] triads() { return triads; }
+
+    /**
+     * Gets the seventh chords of every degree of this mode, without copying them
+     * @return The seventh chords of this mode, starting from the tonic
+     */
+    int[][] seventhChords() { return seventhChords; }
+
+    /**
+     * Gets the string representation of this mode
+     * @return The name of this mode
+     */
+    @Override
+    public String toString() { return name; }
 }
@@ -0,0 +1,297 @@
+package com.JScore;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This is an index to find where a motif occurs in a corpus of songs, even if it is transposed.
+ * The melodic line of each song is its highest note at every start tick, and it is encoded as the sequence of intervals between its notes.
+ * A suffix array is built once over the intervals of the whole corpus, so each query is a binary search followed by a walk over the matches.
+ * A motif matches a melodic line if they have the same intervals, and, optionally, if the time between their notes is close enough.
+ * The index does not change when the songs change, so it needs to be rebuilt after modifying them.
+ */
+public class MotifIndex {
+
+    private static final int SEPARATOR = 0;
+    private static final int ALPHABET_SIZE = 256;
+
+    private final int nbOfSongs;
+    private final int[] songOffsets;
+    private final int[] resolutions;
+    private final int[] intervals;
+    private final byte[] midiKeys;
+    private final long[] startTicks;
+    private final int[] suffixArray;
+
+    /**
+     * Builds the index of a corpus of songs.
+     * @param songs The songs of the corpus
+     */
+    public MotifIndex(@NotNull List<Song> songs) {
+        nbOfSongs = songs.size();
+        songOffsets = new int[nbOfSongs + 1];
+        resolutions = new int[nbOfSongs];
+        MelodicLine[] lines = new MelodicLine[nbOfSongs];
+        for (int song = 0; song < nbOfSongs; song++) {
+            lines[song] = new MelodicLine(songs.get(song));
+            resolutions[song] = songs.get(song).getResolution();
+            // Each song takes one slot per note, or one slot if it has no notes, the last slot being a separator
+            songOffsets[song + 1] = songOffsets[song] + Math.max(1, lines[song].midiKeys.length);
+        }
+
+        int length = songOffsets[nbOfSongs];
+        intervals = new int[length];
+        midiKeys = new byte[length];
+        startTicks = new long[length];
+        for (int song = 0; song < nbOfSongs; song++) {
+            MelodicLine line = lines[song];
+            int offset = songOffsets[song];
+            System.arraycopy(line.midiKeys, 0, midiKeys, offset, line.midiKeys.length);
+            System.arraycopy(line.startTicks, 0, startTicks, offset, line.startTicks.length);
+            for (int i = 0; i + 1 < line.midiKeys.length; i++)
+                intervals[offset + i] = encodeInterval(line.midiKeys[i + 1] - line.midiKeys[i]);
+            intervals[songOffsets[song + 1] - 1] = SEPARATOR;
+        }
+        suffixArray = buildSuffixArray(intervals);
+    }
+
+    /**
+     * Finds every occurrence of the melodic line of a motif, transposed or not, ignoring rhythm.
+     * @param motif The motif to find
+     * @return The occurrences of the motif, sorted by song and then by note
+     * @throws IllegalArgumentException If the melodic line of the motif has less than 2 notes
+     */
+    public @NotNull List<Match> find(@NotNull Song motif) throws IllegalArgumentException { return find(motif, Double.POSITIVE_INFINITY); }
+
+    /**
+     * Finds every occurrence of the melodic line of a motif, transposed or not, with a similar rhythm.
+     * The time between two notes of an occurrence, in beats, needs to be within the tolerance of the time between the same notes of the motif.
+     * @param motif The motif to find
+     * @param rhythmTolerance The allowed difference between the times between notes, as a fraction of the times of the motif.
+     *                        0 means the rhythm needs to be the same, and infinity means the rhythm is ignored.
+     * @return The occurrences of the motif, sorted by song and then by note
+     * @throws IllegalArgumentException If the melodic line of the motif has less than 2 notes or if the tolerance is negative
+     */
+    public @NotNull List<Match> find(@NotNull Song motif, double rhythmTolerance) throws IllegalArgumentException {
+        if (!(rhythmTolerance >= 0))
+            throw new IllegalArgumentException("The rhythm tolerance needs to be a positive number!");
+        MelodicLine line = new MelodicLine(motif);
+        double[] beatsBetweenNotes = new double[Math.max(0, line.startTicks.length - 1)];
+        for (int i = 0; i < beatsBetweenNotes.length; i++)
+            beatsBetweenNotes[i] = (double) (line.startTicks[i + 1] - line.startTicks[i]) / motif.getResolution();
+        return find(line.midiKeys, beatsBetweenNotes, rhythmTolerance);
+    }
+
+    /**
+     * Finds every occurrence of a sequence of notes, transposed or not, ignoring rhythm.
+     * @param motif The notes to find, in order
+     * @return The occurrences of the notes, sorted by song and then by note
+     * @throws IllegalArgumentException If there are less than 2 notes
+     */
+    public @NotNull List<Match> find(@NotNull Note... motif) throws IllegalArgumentException {
+        byte[] motifKeys = new byte[motif.length];
+        for (int i = 0; i < motif.length; i++)
+            motifKeys[i] = motif[i].getMidiKey();
+        return find(motifKeys, null, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Gets the number of songs in the index
+     * @return The number of songs in the index
+     */
+    public int getNbOfSongs() { return nbOfSongs; }
+
+    private @NotNull List<Match> find(byte @NotNull [] motifKeys, double[] beatsBetweenNotes, double rhythmTolerance) throws IllegalArgumentException {
+        if (motifKeys.length < 2)
+            throw new IllegalArgumentException("A motif needs at least 2 notes to be found!");
+        int[] pattern = new int[motifKeys.length - 1];
+        for (int i = 0; i < pattern.length; i++)
+            pattern[i] = encodeInterval(motifKeys[i + 1] - motifKeys[i]);
+
+        int from = firstSuffixNotBefore(pattern, false), to = firstSuffixNotBefore(pattern, true);
+        if (from == to) return Collections.emptyList();
+        int[] positions = Arrays.copyOfRange(suffixArray, from, to);
+        Arrays.sort(positions);
+
+        List<Match> matches = new ArrayList<>();
+        int song = 0;
+        for (int position : positions) {
+            while (songOffsets[song + 1] <= position) song++;
+            if (beatsBetweenNotes != null && !Double.isInfinite(rhythmTolerance) && !rhythmMatches(position, song, beatsBetweenNotes, rhythmTolerance))
+                continue;
+            matches.add(new Match(song, position - songOffsets[song], startTicks[position], midiKeys[position] - motifKeys[0]));
+        }
+        return matches;
+    }
+
+    private boolean rhythmMatches(int position, int song, double @NotNull [] beatsBetweenNotes, double rhythmTolerance) {
+        for (int i = 0; i < beatsBetweenNotes.length; i++) {
+            double beats = (double) (startTicks[position + i + 1] - startTicks[position + i]) / resolutions[song];
+            if (Math.abs(beats - beatsBetweenNotes[i]) > rhythmTolerance * beatsBetweenNotes[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds, with a binary search in the suffix array, the first suffix that does not come before the pattern.
+     * @param pattern The encoded intervals to search for
+     * @param pastPrefix If true, suffixes starting with the pattern are considered to come before it, so the end of the matches is found
+     * @return The index in the suffix array of the first suffix that does not come before the pattern
+     */
+    private int firstSuffixNotBefore(int @NotNull [] pattern, boolean pastPrefix) {
+        int low = 0, high = suffixArray.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareSuffix(suffixArray[middle], pattern);
+            if (comparison < 0 || (pastPrefix && comparison == 0)) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Compares the start of a suffix to a pattern.
+     * @param suffix The position of the suffix
+     * @param pattern The pattern
+     * @return A negative number if the suffix comes before the pattern, 0 if it starts with the pattern and a positive number otherwise
+     */
+    private int compareSuffix(int suffix, int @NotNull [] pattern) {
+        for (int i = 0; i < pattern.length; i++) {
+            if (suffix + i >= intervals.length) return -1;
+            if (intervals[suffix + i] != pattern[i]) return intervals[suffix + i] - pattern[i];
+        }
+        return 0;
+    }
+
+    /**
+     * Encodes an interval so that it is never the separator.
+     * @param semitones The interval in semitones, from -127 to 127
+     * @return The encoded interval, from 1 to 255
+     */
+    private static int encodeInterval(int semitones) { return semitones + 128; }
+
+    /**
+     * Builds the suffix array of a text by prefix doubling, sorting the suffixes with counting sorts.
+     * @param text The text, with symbols from 0 to {@link #ALPHABET_SIZE} - 1
+     * @return The positions of the suffixes of the text, in lexicographic order
+     */
+    private static int @NotNull [] buildSuffixArray(int @NotNull [] text) {
+        int n = text.length;
+        int[] suffixArray = new int[n], rank = new int[n], buffer = new int[n];
+        int[] counts = new int[Math.max(ALPHABET_SIZE, n) + 1];
+        if (n == 0) return suffixArray;
+
+        for (int symbol : text) counts[symbol]++;
+        for (int i = 1; i < ALPHABET_SIZE; i++) counts[i] += counts[i - 1];
+        for (int i = n - 1; i >= 0; i--) suffixArray[--counts[text[i]]] = i;
+        for (int i = 1; i < n; i++)
+            rank[suffixArray[i]] = rank[suffixArray[i - 1]] + (text[suffixArray[i]] != text[suffixArray[i - 1]] ? 1 : 0);
+
+        for (int k = 1; rank[suffixArray[n - 1]] < n - 1; k <<= 1) {
+            // Order the suffixes by the rank of their second half, the ones without a second half first
+            int p = 0;
+            for (int i = n - k; i < n; i++) buffer[p++] = i;
+            for (int i = 0; i < n; i++)
+                if (suffixArray[i] >= k) buffer[p++] = suffixArray[i] - k;
+
+            // Then sort them by the rank of their first half, which keeps the order of the second half for equal first halves
+            int nbOfRanks = rank[suffixArray[n - 1]] + 1;
+            Arrays.fill(counts, 0, nbOfRanks, 0);
+            for (int i = 0; i < n; i++) counts[rank[i]]++;
+            for (int i = 1; i < nbOfRanks; i++) counts[i] += counts[i - 1];
+            for (int i = n - 1; i >= 0; i--) suffixArray[--counts[rank[buffer[i]]]] = buffer[i];
+
+            buffer[suffixArray[0]] = 0;
+            for (int i = 1; i < n; i++) {
+                int previous = suffixArray[i - 1], current = suffixArray[i];
+                boolean sameRank = rank[previous] == rank[current]
+                        && (previous + k < n ? rank[previous + k] : -1) == (current + k < n ? rank[current + k] : -1);
+                buffer[current] = buffer[previous] + (sameRank ? 0 : 1);
+            }
+            int[] swap = rank;
+            rank = buffer;
+            buffer = swap;
+        }
+        return suffixArray;
+    }
+
+    /**
+     * This is the melodic line of a song: its highest note at every start tick, sorted by start tick.
+     */
+    private static final class MelodicLine {
+        private final byte[] midiKeys;
+        private final long[] startTicks;
+
+        private MelodicLine(@NotNull Song song) {
+            List<MidiNote> midiNotes = song.getMidiNotes();
+            // The start tick and midi key of each note are packed together so the notes can be sorted without boxing
+            long[] notes = new long[midiNotes.size()];
+            for (int i = 0; i < notes.length; i++)
+                notes[i] = midiNotes.get(i).getStartTick() << 7 | midiNotes.get(i).getNote().getMidiKey();
+            Arrays.sort(notes);
+            int nbOfNotes = 0;
+            for (int i = 0; i < notes.length; i++)
+                if (i + 1 == notes.length || notes[i] >>> 7 != notes[i + 1] >>> 7) notes[nbOfNotes++] = notes[i];
+            midiKeys = new byte[nbOfNotes];
+            startTicks = new long[nbOfNotes];
+            for (int i = 0; i < nbOfNotes; i++) {
+                midiKeys[i] = (byte) (notes[i] & 0x7F);
+                startTicks[i] = notes[i] >>> 7;
+            }
+        }
+    }
+
+    /**
+     * This is an occurrence of a motif in a song of the index.
+     */
+    public static final class Match {
+        private final int songIndex;
+        private final int noteIndex;
+        private final long startTick;
+        private final int transposition;
+
+        private Match(int songIndex, int noteIndex, long startTick, int transposition) {
+            this.songIndex = songIndex;
+            this.noteIndex = noteIndex;
+            this.startTick = startTick;
+            this.transposition = transposition;
+        }
+
+        /**
+         * Gets the index of the song of this occurrence, in the list of songs of the index
+         * @return The index of the song of this occurrence
+         */
+        public int getSongIndex() { return songIndex; }
+
+        /**
+         * Gets the index, in the melodic line of the song, of the first note of this occurrence
+         * @return The index of the first note of this occurrence in the melodic line
+         */
+        public int getNoteIndex() { return noteIndex; }
+
+        /**
+         * Gets the start tick of the first note of this occurrence
+         * @return The start tick of the first note of this occurrence
+         */
+        public long getStartTick() { return startTick; }
+
+        /**
+         * Gets the number of semitones the motif is transposed by in this occurrence
+         * @return The number of semitones the motif is transposed by
+         */
+        public int getTransposition() { return transposition; }
+
+        /**
+         * Gets the string representation of this occurrence
+         * @return The string representation of this occurrence
+         */
+        @Override
+        public String toString() {
+            return "Match: [song: " + songIndex + ", note: " + noteIndex + ", startTick: " + startTick + ", transposition: " + transposition + "]";
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.JScore;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.sound.midi.InvalidMidiDataException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This converts songs to piano rolls and piano rolls back to songs.
+ * A piano roll is a matrix with one row per frame of time and one column per midi key (128 columns), stored row by row.
+ * Each frame lasts the same number of midi ticks, and a note covers every frame it is held during.
+ * The value of a cell is the velocity of the note divided by 127, or 0 if no note is held. When notes overlap, the loudest one is kept.
+ * The notes are sorted once by their first frame, then the frames are filled in chunks concurrently on the common fork join pool.
+ * There is also a sparse version of the piano roll, which only has the cells that are not 0.
+ */
+public final class PianoRoll {
+
+    /**
+     * The number of columns of a piano roll, one per midi key
+     */
+    public static final int NB_OF_KEYS = 128;
+
+    private static final int FRAMES_PER_TASK = 4096;
+
+    private PianoRoll() {}
+
+    /**
+     * Calculates the number of frames needed to hold every note of a song.
+     * @param song The song
+     * @param ticksPerFrame The number of midi ticks in one frame
+     * @return The number of frames of the piano roll of the song
+     * @throws IllegalArgumentException If the number of ticks per frame is not a positive number or if the song is too long
+     */
+    public static int getNbOfFrames(@NotNull Song song, int ticksPerFrame) throws IllegalArgumentException {
+        return new SortedNotes(song, ticksPerFrame).nbOfFrames;
+    }
+
+    /**
+     * Converts a song to a new dense piano roll.
+     * @param song The song to convert
+     * @param ticksPerFrame The number of midi ticks in one frame
+     * @return The piano roll, with {@link #getNbOfFrames(Song, int)} rows of {@link #NB_OF_KEYS} values
+     * @throws IllegalArgumentException If the number of ticks per frame is not a positive number or if the song is too long
+     */
+    public static float @NotNull [] toDense(@NotNull Song song, int ticksPerFrame) throws IllegalArgumentException {
+        SortedNotes notes = new SortedNotes(song, ticksPerFrame);
+        if ((long) notes.nbOfFrames * NB_OF_KEYS > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The piano roll of the song is too big to fit in an array!");
+        float[] pianoRoll = new float[notes.nbOfFrames * NB_OF_KEYS];
+        new FillTask(notes, FloatBuffer.wrap(pianoRoll), 0, 0, notes.nbOfFrames).invoke();
+        return pianoRoll;
+    }
+
+    /**
+     * Writes the dense piano roll of a song in an array.
+     * The piano roll is cut or padded with 0 to have exactly the specified number of frames.
+     * @param song The song to convert
+     * @param ticksPerFrame The number of midi ticks in one frame
+     * @param target The array to write the piano roll in
+     * @param offset The index in the array where the piano roll starts
+     * @param nbOfFrames The number of frames to write
+     * @throws IllegalArgumentException If the number of ticks per frame is not a positive number or if the song is too long
+     * @throws IndexOutOfBoundsException If the piano roll does not fit in the array
+     */
+    public static void writeDense(@NotNull Song song, int ticksPerFrame, float @NotNull [] target, int offset, int nbOfFrames) throws IllegalArgumentException {
+        writeDense(song, ticksPerFrame, FloatBuffer.wrap(target).position(offset), nbOfFrames);
+    }
+
+    /**
+     * Writes the dense piano roll of a song in a buffer, which can be a direct or a memory mapped buffer, starting at its position.
+     * The piano roll is cut or padded with 0 to have exactly the specified number of frames. The position of the buffer is not changed.
+     * @param song The song to convert
+     * @param ticksPerFrame The number of midi ticks in one frame
+     * @param target The buffer to write the piano roll in
+     * @param nbOfFrames The number of frames to write
+     * @throws IllegalArgumentException If the number of ticks per frame is not a positive number or if the song is too long
+     * @throws IndexOutOfBoundsException If the piano roll does not fit in the remaining space of the buffer
+     */
+    public static void writeDense(@NotNull Song song, int ticksPerFrame, @NotNull FloatBuffer target, int nbOfFrames) throws IllegalArgumentException {
+        if ((long) nbOfFrames * NB_OF_KEYS > target.remaining())
+            throw new IndexOutOfBoundsException("The piano roll needs " + (long) nbOfFrames * NB_OF_KEYS + " floats, but there are only " + target.remaining() + " left!");
+        new FillTask(new SortedNotes(song, ticksPerFrame), target, target.position(), 0, nbOfFrames).invoke();
+    }
+
+    /**
+     * Writes the dense piano roll of a song in a memory mapped file, as little endian floats.
+     * The file is created or overwritten to have exactly the size of the piano roll.
+     * @param song The song to convert
+     * @param ticksPerFrame The number of midi ticks in one frame
+     * @param file The file to write the piano roll in
+     * @return The number of frames written
+     * @throws IllegalArgumentException If the number of ticks per frame is not a positive number or if the song is too long
+     * @throws IOException If an I/O exception occurs
+     */
+    public static int writeDense(@NotNull Song song, int ticksPerFrame, @NotNull Path file) throws IllegalArgumentException, IOException {
+        SortedNotes notes = new SortedNotes(song, ticksPerFrame);
+        long size = (long) notes.nbOfFrames * NB_OF_KEYS * Float.BYTES;
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The piano roll of the song is too big to be memory mapped!");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            new FillTask(notes, mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer(), 0, 0, notes.nbOfFrames).invoke();
+            mapped.force();
+        }
+        return notes.nbOfFrames;
+    }
+
+    /**
+     * Writes the dense piano rolls of multiple songs one after the other in a buffer, starting at its position.
+     * Each piano roll is cut or padded with 0 to have exactly the specified number of frames, so the buffer holds a batch of
+     * songs.size() by framesPerSong by {@link #NB_OF_KEYS} values. The songs are converted concurrently. The position of the buffer is not changed.
+     * @param songs The songs to convert
+     * @param ticksPerFrame The number of midi ticks in one frame
+     * @param framesPerSong The number of frames to write for each song
+     * @param target The buffer to write the piano rolls in
+     * @throws IllegalArgumentException If the number of ticks per frame is not a positive number or if a song is too long
+     * @throws IndexOutOfBoundsException If the piano rolls do not fit in the remaining space of the buffer
+     */
+    public static void writeBatch(@NotNull List<Song> songs, int ticksPerFrame, int framesPerSong, @NotNull FloatBuffer target) throws IllegalArgumentException {
+        long floatsPerSong = (long) framesPerSong * NB_OF_KEYS;
+        if (floatsPerSong * songs.size() > target.remaining())
+            throw new IndexOutOfBoundsException("The piano rolls need " + floatsPerSong * songs.size() + " floats, but there are only " + target.remaining() + " left!");
+        RecursiveAction[] tasks = new RecursiveAction[songs.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            Song song = songs.get(i);
+            int offset = (int) (target.position() + i * floatsPerSong);
+            tasks[i] = new RecursiveAction() {
+                @Override
+                protected void compute() { new FillTask(new SortedNotes(song, ticksPerFrame), target, offset, 0, framesPerSong).invoke(); }
+            };
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    /**
+     * Writes the dense piano rolls of multiple songs one after the other in an array.
+     * @param songs The songs to convert
+     * @param ticksPerFrame The number of midi ticks in one frame
+     * @param framesPerSong The number of frames to write for each song
+     * @param target The array to write the piano rolls in
+     * @param offset The index in the array where the first piano roll starts
+     * @throws IllegalArgumentException If the number of ticks per frame is not a positive number or if a song is too long
+     * @throws IndexOutOfBoundsException If the piano rolls do not fit in the array
+     * @see #writeBatch(List, int, int, FloatBuffer)
+     */
+    public static void writeBatch(@NotNull List<Song> songs, int ticksPerFrame, int framesPerSong, float @NotNull [] target, int offset) throws IllegalArgumentException {
+        writeBatch(songs, ticksPerFrame, framesPerSong, FloatBuffer.wrap(target).position(offset));
+    }
+
+    /**
+     * Converts a song to a sparse piano roll in coordinate format, which only has the cells that are not 0.
+     * @param song The song to convert
+     * @param ticksPerFrame The number of midi ticks in one frame
+     * @return The sparse piano roll, with its cells sorted by frame then by midi key
+     * @throws IllegalArgumentException If the number of ticks per frame is not a positive number or if the song is too long
+     */
+    public static @NotNull Sparse toSparse(@NotNull Song song, int ticksPerFrame) throws IllegalArgumentException {
+        SortedNotes notes = new SortedNotes(song, ticksPerFrame);
+        long nbOfCells = 0;
+        for (int i = 0; i < notes.size; i++)
+            if (notes.velocities[i] != 0) nbOfCells += notes.lastFrames[i] - notes.firstFrames[i] + 1;
+        if (nbOfCells > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The sparse piano roll of the song is too big to fit in an array!");
+
+        // Each cell is packed as its index in the dense piano roll followed by its velocity, so that sorting them
+        // orders the cells and puts the loudest of the cells at the same place last. Silent notes have no cells.
+        long[] cells = new long[(int) nbOfCells];
+        int nbOfPackedCells = 0;
+        for (int i = 0; i < notes.size; i++)
+            if (notes.velocities[i] != 0)
+                for (long frame = notes.firstFrames[i]; frame <= notes.lastFrames[i]; frame++)
+                    cells[nbOfPackedCells++] = (frame * NB_OF_KEYS + notes.midiKeys[i]) << 7 | notes.velocities[i];
+        Arrays.parallelSort(cells);
+
+        int nbOfUniqueCells = 0;
+        for (int i = 0; i < cells.length; i++)
+            if (i + 1 == cells.length || cells[i] >>> 7 != cells[i + 1] >>> 7) cells[nbOfUniqueCells++] = cells[i];
+        int[] frames = new int[nbOfUniqueCells], midiKeys = new int[nbOfUniqueCells];
+        float[] values = new float[nbOfUniqueCells];
+        for (int i = 0; i < nbOfUniqueCells; i++) {
+            frames[i] = (int) ((cells[i] >>> 7) / NB_OF_KEYS);
+            midiKeys[i] = (int) ((cells[i] >>> 7) % NB_OF_KEYS);
+            values[i] = (cells[i] & 0x7F) / 127f;
+        }
+        return new Sparse(notes.nbOfFrames, frames, midiKeys, values);
+    }
+
+    /**
+     * Converts a dense piano roll back to a song.
+     * Every run of consecutive frames of a midi key with the same value that is not 0 becomes a note.
+     * @param pianoRoll The dense piano roll, with {@link #NB_OF_KEYS} values per frame
+     * @param ticksPerFrame The number of midi ticks in one frame
+     * @param resolution The resolution of the song
+     * @return The song, with its notes sorted by their start tick
+     * @throws IllegalArgumentException If the number of ticks per frame is not a positive number or if the length of the piano roll is not a multiple of {@link #NB_OF_KEYS}
+     * @throws InvalidMidiDataException If the resolution is invalid
+     */
+    public static @NotNull Song toSong(float @NotNull [] pianoRoll, int ticksPerFrame, int resolution) throws IllegalArgumentException, InvalidMidiDataException {
+        return toSong(FloatBuffer.wrap(pianoRoll), ticksPerFrame, resolution);
+    }
+
+    /**
+     * Converts a dense piano roll back to a song, reading the remaining values of a buffer.
+     * Every run of consecutive frames of a midi key with the same value that is not 0 becomes a note.
+     * @param pianoRoll The buffer holding the dense piano roll, with {@link #NB_OF_KEYS} values per frame
+     * @param ticksPerFrame The number of midi ticks in one frame
+     * @param resolution The resolution of the song
+     * @return The song, with its notes sorted by their start tick
+     * @throws IllegalArgumentException If the number of ticks per frame is not a positive number or if the number of remaining values is not a multiple of {@link #NB_OF_KEYS}
+     * @throws InvalidMidiDataException If the resolution is invalid
+     */
+    public static @NotNull Song toSong(@NotNull FloatBuffer pianoRoll, int ticksPerFrame, int resolution) throws IllegalArgumentException, InvalidMidiDataException {
+        if (ticksPerFrame <= 0)
+            throw new IllegalArgumentException("The number of ticks per frame needs to be a positive number!");
+        if (pianoRoll.remaining() % NB_OF_KEYS != 0)
+            throw new IllegalArgumentException("The piano roll needs to have " + NB_OF_KEYS + " values per frame!");
+        int nbOfFrames = pianoRoll.remaining() / NB_OF_KEYS, start = pianoRoll.position();
+        int[] runStarts = new int[NB_OF_KEYS];
+        float[] runValues = new float[NB_OF_KEYS];
+        MidiNote[] notes = new MidiNote[16];
+        int nbOfNotes = 0;
+        for (int frame = 0; frame <= nbOfFrames; frame++) {
+            for (int midiKey = 0; midiKey < NB_OF_KEYS; midiKey++) {
+                float value = frame < nbOfFrames ? pianoRoll.get(start + frame * NB_OF_KEYS + midiKey) : 0;
+                if (value == runValues[midiKey]) continue;
+                if (runValues[midiKey] > 0) {
+                    if (nbOfNotes == notes.length) notes = Arrays.copyOf(notes, nbOfNotes * 2);
+                    int velocity = Math.max(1, Math.min(127, Math.round(runValues[midiKey] * 127)));
+                    notes[nbOfNotes++] = new MidiNote(new Note((byte) midiKey), (long) runStarts[midiKey] * ticksPerFrame,
+                            (long) frame * ticksPerFrame, velocity);
+                }
+                runStarts[midiKey] = frame;
+                runValues[midiKey] = value;
+            }
+        }
+        Arrays.sort(notes, 0, nbOfNotes, Comparator.comparingLong(MidiNote::getStartTick));
+        Song song = new Song(resolution);
+        for (int i = 0; i < nbOfNotes; i++)
+            song.addNote(notes[i]);
+        return song;
+    }
+
+    /**
+     * This is a sparse piano roll in coordinate format: the frame, midi key and value of every cell that is not 0.
+     */
+    public static final class Sparse {
+        private final int nbOfFrames;
+        private final int[] frames;
+        private final int[] midiKeys;
+        private final float[] values;
+
+        private Sparse(int nbOfFrames, int[] frames, int[] midiKeys, float[] values) {
+            this.nbOfFrames = nbOfFrames;
+            this.frames = frames;
+            this.midiKeys = midiKeys;
+            this.values = values;
+        }
+
+        /**
+         * Gets the number of frames of the dense piano roll
+         * @return The number of frames of the dense piano roll
+         */
+        public int getNbOfFrames() { return nbOfFrames; }
+
+        /**
+         * Gets the number of cells that are not 0
+         * @return The number of cells that are not 0
+         */
+        public int size() { return values.length; }
+
+        /**
+         * Gets the frame of each cell
+         * @return The frame of each cell, which is the row of the cell. This is not a copy.
+         */
+        public int[] getFrames() { return frames; }
+
+        /**
+         * Gets the midi key of each cell
+         * @return The midi key of each cell, which is the column of the cell. This is not a copy.
+         */
+        public int[] getMidiKeys() { return midiKeys; }
+
+        /**
+         * Gets the value of each cell
+         * @return The value of each cell, which is the velocity of the note divided by 127. This is not a copy.
+         */
+        public float[] getValues() { return values; }
+    }
+
+    /**
+     * This holds the notes of a song in primitive arrays, converted to frames and sorted by their first frame.
+     */
+    private static final class SortedNotes {
+        private final int size;
+        private final int[] firstFrames;
+        private final int[] lastFrames;
+        private final int[] midiKeys;
+        private final int[] velocities;
+        private final int nbOfFrames;
+        private final int longestNoteInFrames;
+
+        private SortedNotes(@NotNull Song song, int ticksPerFrame) throws IllegalArgumentException {
+            if (ticksPerFrame <= 0)
+                throw new IllegalArgumentException("The number of ticks per frame needs to be a positive number!");
+            List<MidiNote> midiNotes = song.getMidiNotes();
+            size = midiNotes.size();
+            // The first frame and index of each note are packed together so the notes can be sorted without boxing
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                long firstFrame = midiNotes.get(i).getStartTick() / ticksPerFrame;
+                if (firstFrame >= Integer.MAX_VALUE)
+                    throw new IllegalArgumentException("The song is too long to be converted to a piano roll!");
+                order[i] = firstFrame << 32 | i;
+            }
+            Arrays.sort(order);
+
+            firstFrames = new int[size];
+            lastFrames = new int[size];
+            midiKeys = new int[size];
+            velocities = new int[size];
+            int lastFrameOfSong = -1, longestNote = 0;
+            for (int i = 0; i < size; i++) {
+                MidiNote midiNote = midiNotes.get((int) order[i]);
+                firstFrames[i] = (int) (order[i] >>> 32);
+                long lastFrame = midiNote.getEndTick() > midiNote.getStartTick() ? (midiNote.getEndTick() - 1) / ticksPerFrame : firstFrames[i];
+                if (lastFrame >= Integer.MAX_VALUE)
+                    throw new IllegalArgumentException("The song is too long to be converted to a piano roll!");
+                lastFrames[i] = (int) lastFrame;
+                midiKeys[i] = midiNote.getNote().getMidiKey();
+                velocities[i] = Math.max(0, Math.min(127, midiNote.getVelocity()));
+                lastFrameOfSong = Math.max(lastFrameOfSong, lastFrames[i]);
+                longestNote = Math.max(longestNote, lastFrames[i] - firstFrames[i]);
+            }
+            nbOfFrames = lastFrameOfSong + 1;
+            longestNoteInFrames = longestNote;
+        }
+
+        /**
+         * Finds, with a binary search, the index of the first note whose first frame is at or after a frame.
+         * @param frame The frame to search for
+         * @return The index of the first note starting at or after the frame, or the number of notes if there are none
+         */
+        private int firstNoteStartingAtOrAfter(long frame) {
+            int low = 0, high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (firstFrames[middle] < frame) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+    }
+
+    /**
+     * This task fills a range of frames of a dense piano roll, splitting the range in smaller chunks that are filled concurrently.
+     */
+    private static final class FillTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SortedNotes notes;
+        private final FloatBuffer target;
+        private final int offset;
+        private final int fromFrame;
+        private final int toFrame;
+
+        private FillTask(SortedNotes notes, FloatBuffer target, int offset, int fromFrame, int toFrame) {
+            this.notes = notes;
+            this.target = target;
+            this.offset = offset;
+            this.fromFrame = fromFrame;
+            this.toFrame = toFrame;
+        }
+
+        @Override
+        protected void compute() {
+            if (toFrame - fromFrame > FRAMES_PER_TASK) {
+                int middle = (fromFrame + toFrame) >>> 1;
+                invokeAll(new FillTask(notes, target, offset, fromFrame, middle), new FillTask(notes, target, offset, middle, toFrame));
+                return;
+            }
+            for (int i = offset + fromFrame * NB_OF_KEYS; i < offset + toFrame * NB_OF_KEYS; i++)
+                target.put(i, 0);
+            // A note held during this chunk cannot start earlier than the longest note before the chunk
+            for (int i = notes.firstNoteStartingAtOrAfter((long) fromFrame - notes.longestNoteInFrames);
+                 i < notes.size && notes.firstFrames[i] < toFrame; i++) {
+                float value = notes.velocities[i] / 127f;
+                for (int frame = Math.max(fromFrame, notes.firstFrames[i]); frame <= Math.min(toFrame - 1, notes.lastFrames[i]); frame++) {
+                    int index = offset + frame * NB_OF_KEYS + notes.midiKeys[i];
+                    if (value > target.get(index)) target.put(index, value);
+                }
+            }
+        }
+    }
+}
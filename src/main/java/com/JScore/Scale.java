@@ -6,19 +6,29 @@ import java.util.ArrayList;
 
 /**
  * This represents a scale in music.
- * The scale object will have 2 fields: a list of notes of the scale and a list of chords of this scale.
- * com.ejrp.JScore.Note: The chords field can be null if the mode of the key is the chromatic mode.
+ * The scale object will have 3 fields: a list of notes of the scale, a list of triads and a list of seventh chords of this scale.
+ * The chords are built from the triads and seventh chords of the mode of the key, so they are correct for any mode.
+ * Each seventh chord is only built the first time it is needed, since it can go past the highest midi key when the tonic is very high.
+ * The scale keeps the tonic and the mode it is created with, so it does not change when its key is modified.
+ * com.ejrp.JScore.Note: The chords fields can be null if the mode of the key is the chromatic mode.
  */
 public class Scale {
 
     private final ArrayList<Note> scaleNotes = new ArrayList<>();
+    private final byte tonicMidiKey;
+    private final Mode mode;
+    private final Chord[] seventhChords;
     private ChordProgression scaleChords;
+    private ChordProgression scaleSeventhChords;
 
     /**
      * Creates a scale object with the desired key
      * @param key The key of this scale
      */
     public Scale(Key key) {
+        this.tonicMidiKey = key.getTonic().getMidiKey();
+        this.mode = key.getMode();
+        this.seventhChords = new Chord[mode.getNbOfDegrees()];
         generateScaleNotes(key);
         if (!key.getMode().equals(Mode.Chromatic))
             generateScaleChords(key);
@@ -27,18 +37,37 @@ public class Scale {
     private void generateScaleNotes(@NotNull Key key) {
         scaleNotes.clear();
         scaleNotes.add(key.getTonic());
-        for(int i = 0; i < key.getMode().getSteps().size(); i++)
-            scaleNotes.add(new Note((byte) (scaleNotes.get(i).getMidiKey() + key.getMode().getSteps().get(i))));
+        int[] steps = key.getMode().steps();
+        for(int i = 0; i < steps.length; i++)
+            scaleNotes.add(new Note((byte) (scaleNotes.get(i).getMidiKey() + steps[i])));
     }
 
-    private void generateScaleChords(Key key) {
+    private void generateScaleChords(@NotNull Key key) {
         scaleChords = new ChordProgression(key);
-        for (int i = 1; i <= scaleNotes.size(); i++)
-            switch (i) {
-                case 1,4,5 -> scaleChords.addAChord(new Chord(scaleNotes.get(i - 1)).appendMajorChord());
-                case 2,3,6 -> scaleChords.addAChord(new Chord(scaleNotes.get(i - 1)).appendMinorChord());
-                case 7 -> scaleChords.addAChord(new Chord(scaleNotes.get(i - 1)).addMinor3().addMinor3());
-            }
+        for (int[] triad : mode.triads())
+            scaleChords.addAChord(buildChord(triad));
+    }
+
+    private @NotNull Chord buildChord(int @NotNull [] intervals) throws IllegalArgumentException {
+        for (int interval : intervals)
+            if (tonicMidiKey + interval > 127)
+                throw new IllegalArgumentException("A midiKey of this chord is more than 127 and so it is out of range!");
+        Chord chord = new Chord(new Note((byte) (tonicMidiKey + intervals[0])));
+        for (int i = 1; i < intervals.length; i++)
+            chord.appendANewNote(new Note((byte) (tonicMidiKey + intervals[i])));
+        return chord;
+    }
+
+    /**
+     * Gets the seventh chord of a degree of this scale, building it the first time it is needed.
+     * @param degree The degree of the seventh chord, from 1 to the number of degrees of the mode
+     * @return The seventh chord of the degree
+     * @throws IllegalArgumentException If a note of the seventh chord is above the highest midi key
+     */
+    @NotNull Chord getScaleSeventhChord(int degree) throws IllegalArgumentException {
+        if (seventhChords[degree - 1] == null)
+            seventhChords[degree - 1] = buildChord(mode.seventhChords()[degree - 1]);
+        return seventhChords[degree - 1];
     }
 
     /**
@@ -54,6 +83,22 @@ public class Scale {
      */
     public ChordProgression getScaleChords() { return scaleChords; }
 
+    /**
+     * Gets the seventh chords of this scale, in a chord progression object, starting from the tonic chord to the leading tone / subtonic chord
+     * This will return null if the mode of this scale key is the chromatic mode
+     * @return The seventh chords of this scale
+     * @throws IllegalArgumentException If a note of any seventh chord of this scale is above the highest midi key
+     */
+    public ChordProgression getScaleSeventhChords() throws IllegalArgumentException {
+        if (scaleSeventhChords == null && !mode.equals(Mode.Chromatic)) {
+            ChordProgression progression = new ChordProgression(new Key(mode, new Note(tonicMidiKey)));
+            for (int degree = 1; degree <= seventhChords.length; degree++)
+                progression.addAChord(getScaleSeventhChord(degree));
+            scaleSeventhChords = progression;
+        }
+        return scaleSeventhChords;
+    }
+
     /**
      * Gets the string representation of this scale
      * @return The string representation of this scale
@@ -6,8 +6,10 @@ import javax.sound.midi.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This represents a song in music.
@@ -18,7 +20,9 @@ import java.util.List;
  */
 public class Song {
 
-    private final List<MidiNote> midiNoteList = new ArrayList<>();
+    private static final Comparator<MidiNote> START_TICK_ORDER = Comparator.comparingLong(MidiNote::getStartTick);
+
+    private final ArrayList<MidiNote> midiNoteList = new ArrayList<>();
     private final Sequence sequence;
     private final Track track1;
 
@@ -93,6 +97,267 @@ public class Song {
      */
     public List<MidiNote> getMidiNotes() { return midiNoteList; }
 
+    /**
+     * Gets the resolution of this song
+     * @return The number of midi ticks in 1 quarter note (1 beat)
+     */
+    public int getResolution() { return sequence.getResolution(); }
+
+    /**
+     * Calculates the length of this song in midi ticks, which is the end tick of the note that ends last.
+     * @return The length of this song in midi ticks, or 0 if the song has no notes
+     */
+    public long getLengthInMidiTicks() {
+        long length = 0;
+        for (MidiNote midiNote : midiNoteList)
+            length = Math.max(length, midiNote.getEndTick());
+        return length;
+    }
+
+    /**
+     * Adds the notes of another song on top of this song, starting at the specified tick.
+     * The notes of the other song are copied and converted to the resolution of this song.
+     * The notes of this song will be sorted by their start tick after this operation.
+     * @param song The song to put on top of this song
+     * @param offsetTicks The tick, in the resolution of this song, where the other song starts
+     * @throws IllegalArgumentException If the offset is negative
+     */
+    public void overlay(@NotNull Song song, long offsetTicks) throws IllegalArgumentException {
+        if (offsetTicks < 0)
+            throw new IllegalArgumentException("The offset of the overlaid song cannot be negative!");
+        MidiNote[][] runs = {sortedNotes(), song.sortedCopies(offsetTicks, getResolution())};
+        midiNoteList.clear();
+        kWayMerge(runs, midiNoteList);
+    }
+
+    /**
+     * Inserts another song inside this song at the specified tick.
+     * The notes of this song starting at or after that tick are pushed back by the length of the inserted song,
+     * while notes starting before that tick are left untouched, even if they are still held at that tick.
+     * The pushed back notes are replaced by copies, so midi notes shared with other songs do not move.
+     * The notes of the other song are copied and converted to the resolution of this song.
+     * The notes of this song will be sorted by their start tick after this operation.
+     * @param at The tick, in the resolution of this song, where the other song is inserted
+     * @param song The song to insert
+     * @throws IllegalArgumentException If the insertion tick is negative
+     */
+    public void splice(long at, @NotNull Song song) throws IllegalArgumentException {
+        if (at < 0)
+            throw new IllegalArgumentException("The insertion tick of the spliced song cannot be negative!");
+        MidiNote[] notes = sortedNotes();
+        MidiNote[] inserted = song.sortedCopies(at, getResolution());
+        long insertedLength = rescaleTick(song.getLengthInMidiTicks(), song.getResolution(), getResolution());
+        int split = firstNoteStartingAtOrAfter(notes, at);
+        // The pushed back notes are copied, since the original midi notes can be shared with other songs
+        for (int i = split; i < notes.length; i++)
+            notes[i] = new MidiNote(new Note(notes[i].getNote().getMidiKey()), notes[i].getStartTick() + insertedLength,
+                    notes[i].getEndTick() + insertedLength, notes[i].getVelocity());
+        // Every note before the split starts before the inserted song, and every shifted note starts after it ends,
+        // so the three runs are already in order and can be copied in bulk.
+        midiNoteList.clear();
+        midiNoteList.addAll(Arrays.asList(notes).subList(0, split));
+        midiNoteList.addAll(Arrays.asList(inserted));
+        midiNoteList.addAll(Arrays.asList(notes).subList(split, notes.length));
+    }
+
+    /**
+     * Creates a new song from the notes of this song that start between two ticks.
+     * The notes are copied, moved so that the start tick of the slice becomes tick 0
+     * and cut so that they do not last past the end tick of the slice.
+     * @param startTick The first tick of the slice, inclusive
+     * @param endTick The last tick of the slice, exclusive
+     * @return A new song with the same resolution containing the notes of the slice, sorted by their start tick
+     * @throws IllegalArgumentException If the start tick is negative or bigger than the end tick
+     * @throws InvalidMidiDataException If the resolution of this song is invalid
+     */
+    public @NotNull Song slice(long startTick, long endTick) throws IllegalArgumentException, InvalidMidiDataException {
+        if (startTick < 0 || startTick > endTick)
+            throw new IllegalArgumentException("The start tick of the slice needs to be positive and smaller than the end tick!");
+        Song slice = new Song(getResolution());
+        MidiNote[] notes = midiNoteList.toArray(new MidiNote[0]);
+        Arrays.sort(notes, START_TICK_ORDER);
+        for (int i = firstNoteStartingAtOrAfter(notes, startTick); i < notes.length && notes[i].getStartTick() < endTick; i++)
+            slice.addNote(new MidiNote(new Note(notes[i].getNote().getMidiKey()), notes[i].getStartTick() - startTick,
+                    Math.min(notes[i].getEndTick(), endTick) - startTick, notes[i].getVelocity()));
+        return slice;
+    }
+
+    /**
+     * Merges multiple songs into a new song, where all the songs start at tick 0.
+     * The notes of the songs are copied and converted to the resolution of the first song.
+     * @param songs The songs to merge
+     * @return A new song containing the notes of every song, sorted by their start tick
+     * @throws IllegalArgumentException If no songs are given
+     * @throws InvalidMidiDataException If the resolution of the first song is invalid
+     */
+    public static @NotNull Song merge(@NotNull Song... songs) throws IllegalArgumentException, InvalidMidiDataException {
+        if (songs.length == 0)
+            throw new IllegalArgumentException("There needs to be at least one song to merge!");
+        Song merged = new Song(songs[0].getResolution());
+        MidiNote[][] runs = new MidiNote[songs.length][];
+        int totalSize = 0;
+        for (int i = 0; i < songs.length; i++) {
+            runs[i] = songs[i].sortedCopies(0, merged.getResolution());
+            totalSize += runs[i].length;
+        }
+        merged.midiNoteList.ensureCapacity(totalSize);
+        kWayMerge(runs, merged.midiNoteList);
+        return merged;
+    }
+
+    /**
+     * Converts a midi file to a song object, decoding its tracks concurrently on the common fork join pool.
+     * This is faster than {@link #convertMidiToSong(File)} for files with many tracks.
+     * @param midiFile The midi file to convert
+     * @return The converted song object, with its notes sorted by their start tick
+     * @throws InvalidMidiDataException If the midi file data is invalid.
+     * @throws IOException If an I/O  exception occurs
+     * @see #convertMidiToSongInParallel(File, ForkJoinPool)
+     */
+    public static @NotNull Song convertMidiToSongInParallel(File midiFile) throws InvalidMidiDataException, IOException {
+        return convertMidiToSongInParallel(midiFile, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Converts a midi file to a song object, decoding its tracks concurrently.
+     * The track chunks of the file are first indexed by scanning the chunk headers,
+     * then each track is decoded on the pool into its own buffer of notes and the buffers are merged by start tick.
+     * The notes are the same as the ones of {@link #convertMidiToSong(File)}, except that they are sorted by their start tick.
+     * @param midiFile The midi file to convert
+     * @param pool The pool to decode the tracks on
+     * @return The converted song object, with its notes sorted by their start tick
+     * @throws InvalidMidiDataException If the midi file data is invalid.
+     * @throws IOException If an I/O  exception occurs
+     */
+    public static @NotNull Song convertMidiToSongInParallel(File midiFile, @NotNull ForkJoinPool pool) throws InvalidMidiDataException, IOException {
+        MidiTrackDecoder decoder = new MidiTrackDecoder(midiFile);
+        MidiNote[][] tracks = decoder.decodeTracks(pool);
+        Song song = new Song(decoder.getResolution());
+        int nbOfNotes = 0;
+        for (MidiNote[] track : tracks)
+            nbOfNotes += track.length;
+        song.midiNoteList.ensureCapacity(nbOfNotes);
+        kWayMerge(tracks, song.midiNoteList);
+        return song;
+    }
+
+    /**
+     * Sorts the notes of this song by their start tick.
+     * The sort is linear when the notes are already sorted, which is the case after any merging operation.
+     * @return The sorted notes of this song
+     */
+    private MidiNote[] sortedNotes() {
+        midiNoteList.sort(START_TICK_ORDER);
+        return midiNoteList.toArray(new MidiNote[0]);
+    }
+
+    /**
+     * Copies the notes of this song, sorted by their start tick, in another resolution and moved by an offset.
+     * @param offsetTicks The offset to add to the ticks of the copies, in the new resolution
+     * @param resolution The resolution of the copies
+     * @return The sorted copies of the notes of this song
+     */
+    private MidiNote[] sortedCopies(long offsetTicks, int resolution) {
+        MidiNote[] copies = midiNoteList.toArray(new MidiNote[0]);
+        Arrays.sort(copies, START_TICK_ORDER);
+        int songResolution = getResolution();
+        for (int i = 0; i < copies.length; i++)
+            copies[i] = new MidiNote(new Note(copies[i].getNote().getMidiKey()),
+                    offsetTicks + rescaleTick(copies[i].getStartTick(), songResolution, resolution),
+                    offsetTicks + rescaleTick(copies[i].getEndTick(), songResolution, resolution),
+                    copies[i].getVelocity());
+        return copies;
+    }
+
+    /**
+     * Converts a tick from one resolution to another one.
+     * @param tick The tick to convert
+     * @param fromResolution The resolution of the tick
+     * @param toResolution The resolution to convert the tick to
+     * @return The converted tick
+     */
+    private static long rescaleTick(long tick, int fromResolution, int toResolution) {
+        return fromResolution == toResolution ? tick : tick * toResolution / fromResolution;
+    }
+
+    /**
+     * Finds, with a binary search, the index of the first note starting at or after a tick.
+     * @param sortedNotes The notes to search, sorted by their start tick
+     * @param tick The tick to search for
+     * @return The index of the first note starting at or after the tick, or the number of notes if there are none
+     */
+    private static int firstNoteStartingAtOrAfter(MidiNote @NotNull [] sortedNotes, long tick) {
+        int low = 0, high = sortedNotes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedNotes[middle].getStartTick() < tick) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Merges runs of notes sorted by their start tick into a single sorted list.
+     * A binary heap of the runs, ordered by the start tick of their next note, is used so that the merge takes O(n log k) time
+     * for n notes in k runs, instead of sorting all the notes again.
+     * Notes with the same start tick are taken in the order of their runs, and the remainder of the last run is copied in bulk.
+     * @param runs The runs of notes to merge, each sorted by their start tick
+     * @param mergedNotes The list to add the merged notes to
+     */
+    private static void kWayMerge(MidiNote @NotNull [][] runs, List<MidiNote> mergedNotes) {
+        int[] heap = new int[runs.length];
+        int[] nextNotes = new int[runs.length];
+        int heapSize = 0;
+        for (int run = 0; run < runs.length; run++)
+            if (runs[run].length > 0) heap[heapSize++] = run;
+        for (int i = heapSize / 2 - 1; i >= 0; i--)
+            siftDown(heap, heapSize, i, runs, nextNotes);
+
+        while (heapSize > 1) {
+            int run = heap[0];
+            mergedNotes.add(runs[run][nextNotes[run]++]);
+            if (nextNotes[run] == runs[run].length) heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, 0, runs, nextNotes);
+        }
+        if (heapSize == 1)
+            mergedNotes.addAll(Arrays.asList(runs[heap[0]]).subList(nextNotes[heap[0]], runs[heap[0]].length));
+    }
+
+    /**
+     * Moves a run down the merging heap until the heap is ordered again.
+     * @param heap The heap of run indexes
+     * @param heapSize The number of runs in the heap
+     * @param index The index in the heap of the run to move down
+     * @param runs The runs of notes being merged
+     * @param nextNotes The index of the next note to merge in each run
+     */
+    private static void siftDown(int[] heap, int heapSize, int index, MidiNote[][] runs, int[] nextNotes) {
+        int run = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && runsInOrder(heap[child + 1], heap[child], runs, nextNotes)) child++;
+            if (!runsInOrder(heap[child], run, runs, nextNotes)) break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = run;
+    }
+
+    /**
+     * Checks if the next note of a run should be merged before the next note of another run.
+     * @param first The index of the first run
+     * @param second The index of the second run
+     * @param runs The runs of notes being merged
+     * @param nextNotes The index of the next note to merge in each run
+     * @return True if the next note of the first run comes before the next note of the second run
+     */
+    private static boolean runsInOrder(int first, int second, MidiNote[][] runs, int[] nextNotes) {
+        long firstTick = runs[first][nextNotes[first]].getStartTick();
+        long secondTick = runs[second][nextNotes[second]].getStartTick();
+        return firstTick < secondTick || (firstTick == secondTick && first < second);
+    }
+
     /**
      * Writes the song to a midi file.
      * @param fileToWriteTo The file to write the sequence onto.
@@ -106,6 +371,15 @@ public class Song {
         MidiSystem.write(sequence,fileType,fileToWriteTo);
     }
 
+    /**
+     * Converts this song to a dense piano roll, with one row of 128 values per frame.
+     * @param ticksPerFrame The number of midi ticks in one frame
+     * @return The piano roll of this song
+     * @throws IllegalArgumentException If the number of ticks per frame is not a positive number or if the song is too long
+     * @see PianoRoll
+     */
+    public float @NotNull [] toPianoRoll(int ticksPerFrame) throws IllegalArgumentException { return PianoRoll.toDense(this, ticksPerFrame); }
+
     /**
      * Gets the string representation of this song
      * @return The string representation of this song
@@ -119,6 +393,8 @@ public class Song {
 
     /**
      * Converts a midi file to a song object.
+     * Note on and note off messages are paired within their track and channel,
+     * and a note on message with a velocity of 0 ends a note instead of starting one.
      * @param midiFile The midi file to convert
      * @return The converted song object.
      * @throws InvalidMidiDataException If the midi file data is invalid.
@@ -127,9 +403,10 @@ public class Song {
     public static @NotNull Song convertMidiToSong(File midiFile) throws InvalidMidiDataException, IOException {
         Sequence sequence = MidiSystem.getSequence(midiFile);
         Song song = new Song(sequence.getResolution());
-        List<MidiNote> startNotes = new ArrayList<>();
 
         for (Track track : sequence.getTracks()) {
+            List<MidiNote> startNotes = new ArrayList<>();
+            List<Integer> startChannels = new ArrayList<>();
 
             for (int i = 0; i < track.size(); i++) {
                 MidiEvent event = track.get(i);
@@ -138,18 +415,22 @@ public class Song {
                 if (message instanceof ShortMessage) {
                     ShortMessage sm = (ShortMessage) message;
 
-                    if (sm.getCommand() == ShortMessage.NOTE_ON)
+                    if (sm.getCommand() == ShortMessage.NOTE_ON && sm.getData2() > 0) {
                         startNotes.add(new MidiNote(new Note(sm.getMessage()[1]), event.getTick(), sm.getData2()));
-                    else if (sm.getCommand() == ShortMessage.NOTE_OFF) {
+                        startChannels.add(sm.getChannel());
+                    } else if (sm.getCommand() == ShortMessage.NOTE_OFF || sm.getCommand() == ShortMessage.NOTE_ON) {
                         MidiNote midiNote = null;
-                        for (MidiNote notesData : startNotes) {
-                            if (notesData.getNote().getMidiKey() == sm.getData1()) {
-                                midiNote = notesData;
-                                startNotes.remove(notesData);
+                        for (int j = 0; j < startNotes.size(); j++) {
+                            if (startNotes.get(j).getNote().getMidiKey() == sm.getData1() && startChannels.get(j) == sm.getChannel()) {
+                                midiNote = startNotes.remove(j);
+                                startChannels.remove(j);
                                 break;
                             }
                         }
-                        if (midiNote != null) song.addNote(midiNote);
+                        if (midiNote != null) {
+                            midiNote.setEndTick(event.getTick());
+                            song.addNote(midiNote);
+                        }
                         // If midi note is null than this means that there is not a Note OFF message that corresponds to a Note On message.
                     }
                 }
@@ -0,0 +1,385 @@
+package com.JScore;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * This holds the polyphony and density statistics of a song.
+ * The statistics are computed in a single sweep over the note on and note off events of the song,
+ * which are packed into longs and sorted without boxing. At the same tick, note offs come before note ons,
+ * so a note starting exactly when another ends does not overlap it. Notes with a length of 0 are ignored.
+ * The song is split into windows of the same number of ticks (a bar for example), and the number of notes starting
+ * and the range of the notes sounding are computed for each window.
+ * The parallel version splits the song into ranges of windows, finds the notes held at the start of each range,
+ * then sweeps the ranges concurrently and combines their results.
+ */
+public final class SongStats {
+
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final long NOTE_ON = 0x80;
+
+    private final long ticksPerWindow;
+    private final int nbOfNotes;
+    private final int[] notesPerWindow;
+    private final int[] lowestMidiKeys;
+    private final int[] highestMidiKeys;
+    private final int maxPolyphony;
+    private final long maxPolyphonyTick;
+    private final long soundingTicks;
+    private final long overlappingTicks;
+    private final long noteTicks;
+    private final int nbOfOverlappingNotes;
+
+    private SongStats(long ticksPerWindow, int nbOfNotes, int[] notesPerWindow, int[] lowestMidiKeys, int[] highestMidiKeys, Sweep total) {
+        this.ticksPerWindow = ticksPerWindow;
+        this.nbOfNotes = nbOfNotes;
+        this.notesPerWindow = notesPerWindow;
+        this.lowestMidiKeys = lowestMidiKeys;
+        this.highestMidiKeys = highestMidiKeys;
+        this.maxPolyphony = total.maxPolyphony;
+        this.maxPolyphonyTick = total.maxPolyphonyTick;
+        this.soundingTicks = total.soundingTicks;
+        this.overlappingTicks = total.overlappingTicks;
+        this.noteTicks = total.noteTicks;
+        this.nbOfOverlappingNotes = total.nbOfOverlappingNotes;
+    }
+
+    /**
+     * Computes the statistics of a song on the current thread.
+     * @param song The song
+     * @param ticksPerWindow The number of midi ticks in one window
+     * @return The statistics of the song
+     * @throws IllegalArgumentException If the number of ticks per window is not a positive number or if the song is too long
+     */
+    public static @NotNull SongStats of(@NotNull Song song, long ticksPerWindow) throws IllegalArgumentException {
+        Events events = new Events(song, ticksPerWindow, false);
+        int[] notesPerWindow = new int[events.nbOfWindows], lowestMidiKeys = new int[events.nbOfWindows], highestMidiKeys = new int[events.nbOfWindows];
+        Sweep sweep = new Sweep(events, notesPerWindow, lowestMidiKeys, highestMidiKeys, new int[PianoRoll.NB_OF_KEYS]);
+        sweep.run(0, events.nbOfWindows);
+        return new SongStats(ticksPerWindow, events.nbOfNotes, notesPerWindow, lowestMidiKeys, highestMidiKeys, sweep);
+    }
+
+    /**
+     * Computes the statistics of a song concurrently on the common fork join pool.
+     * @param song The song
+     * @param ticksPerWindow The number of midi ticks in one window
+     * @return The statistics of the song
+     * @throws IllegalArgumentException If the number of ticks per window is not a positive number or if the song is too long
+     */
+    public static @NotNull SongStats ofInParallel(@NotNull Song song, long ticksPerWindow) throws IllegalArgumentException {
+        return ofInParallel(song, ticksPerWindow, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the statistics of a song concurrently.
+     * @param song The song
+     * @param ticksPerWindow The number of midi ticks in one window
+     * @param pool The pool to compute the statistics on
+     * @return The statistics of the song, which are the same as the ones computed by {@link #of(Song, long)}
+     * @throws IllegalArgumentException If the number of ticks per window is not a positive number or if the song is too long
+     */
+    public static @NotNull SongStats ofInParallel(@NotNull Song song, long ticksPerWindow, @NotNull ForkJoinPool pool) throws IllegalArgumentException {
+        Events events = new Events(song, ticksPerWindow, true);
+        int nbOfWindows = events.nbOfWindows;
+        int[] notesPerWindow = new int[nbOfWindows], lowestMidiKeys = new int[nbOfWindows], highestMidiKeys = new int[nbOfWindows];
+        int nbOfChunks = Math.max(1, Math.min(nbOfWindows, pool.getParallelism() * CHUNKS_PER_THREAD));
+        int[] firstWindows = new int[nbOfChunks + 1];
+        for (int chunk = 0; chunk <= nbOfChunks; chunk++)
+            firstWindows[chunk] = (int) ((long) nbOfWindows * chunk / nbOfChunks);
+
+        // First find how many times each midi key is held at the end of each chunk, then at the start of each chunk
+        int[][] heldMidiKeys = new int[nbOfChunks][PianoRoll.NB_OF_KEYS];
+        invokeInParallel(pool, nbOfChunks - 1, chunk -> {
+            int end = events.firstEventOfWindow(firstWindows[chunk + 1]);
+            for (int i = events.firstEventOfWindow(firstWindows[chunk]); i < end; i++)
+                heldMidiKeys[chunk + 1][Events.midiKey(events.events[i])] += Events.isNoteOn(events.events[i]) ? 1 : -1;
+        });
+        for (int chunk = 1; chunk < nbOfChunks; chunk++)
+            for (int midiKey = 0; midiKey < PianoRoll.NB_OF_KEYS; midiKey++)
+                heldMidiKeys[chunk][midiKey] += heldMidiKeys[chunk - 1][midiKey];
+
+        Sweep[] sweeps = new Sweep[nbOfChunks];
+        invokeInParallel(pool, nbOfChunks, chunk -> {
+            sweeps[chunk] = new Sweep(events, notesPerWindow, lowestMidiKeys, highestMidiKeys, heldMidiKeys[chunk]);
+            sweeps[chunk].run(firstWindows[chunk], firstWindows[chunk + 1]);
+        });
+
+        Sweep total = sweeps[0];
+        for (int chunk = 1; chunk < nbOfChunks; chunk++)
+            total.combine(sweeps[chunk]);
+        return new SongStats(ticksPerWindow, events.nbOfNotes, notesPerWindow, lowestMidiKeys, highestMidiKeys, total);
+    }
+
+    private static void invokeInParallel(@NotNull ForkJoinPool pool, int nbOfTasks, @NotNull IntConsumer task) {
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                List<ForkJoinTask<?>> tasks = new ArrayList<>(nbOfTasks);
+                for (int i = 0; i < nbOfTasks; i++) {
+                    int index = i;
+                    tasks.add(ForkJoinTask.adapt(() -> task.accept(index)));
+                }
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * Gets the number of midi ticks in one window
+     * @return The number of midi ticks in one window
+     */
+    public long getTicksPerWindow() { return ticksPerWindow; }
+
+    /**
+     * Gets the number of windows of the song, which cover every tick from 0 to the end of the last note
+     * @return The number of windows of the song
+     */
+    public int getNbOfWindows() { return notesPerWindow.length; }
+
+    /**
+     * Gets the number of notes used for the statistics, which are the notes with a length that is not 0
+     * @return The number of notes used for the statistics
+     */
+    public int getNbOfNotes() { return nbOfNotes; }
+
+    /**
+     * Gets the number of notes starting in each window
+     * @return A new array with the number of notes starting in each window
+     */
+    public int @NotNull [] getNotesPerWindow() { return notesPerWindow.clone(); }
+
+    /**
+     * Gets the lowest midi key sounding in each window
+     * @return A new array with the lowest midi key sounding in each window, or -1 if no note sounds in the window
+     */
+    public int @NotNull [] getLowestMidiKeys() { return lowestMidiKeys.clone(); }
+
+    /**
+     * Gets the highest midi key sounding in each window
+     * @return A new array with the highest midi key sounding in each window, or -1 if no note sounds in the window
+     */
+    public int @NotNull [] getHighestMidiKeys() { return highestMidiKeys.clone(); }
+
+    /**
+     * Gets the maximum number of notes sounding at the same time
+     * @return The maximum polyphony of the song
+     */
+    public int getMaxPolyphony() { return maxPolyphony; }
+
+    /**
+     * Gets the first tick at which the maximum number of notes are sounding at the same time
+     * @return The first tick of maximum polyphony, or 0 if the song has no notes
+     */
+    public long getMaxPolyphonyTick() { return maxPolyphonyTick; }
+
+    /**
+     * Gets the number of ticks during which at least one note is sounding
+     * @return The number of ticks during which at least one note is sounding
+     */
+    public long getSoundingTicks() { return soundingTicks; }
+
+    /**
+     * Gets the number of ticks during which at least two notes are sounding
+     * @return The number of ticks during which notes overlap
+     */
+    public long getOverlappingTicks() { return overlappingTicks; }
+
+    /**
+     * Gets the average number of notes sounding at the same time, when at least one note is sounding
+     * @return The average polyphony of the song, or 0 if the song has no notes
+     */
+    public double getAveragePolyphony() { return soundingTicks == 0 ? 0 : (double) noteTicks / soundingTicks; }
+
+    /**
+     * Gets the number of notes that start while another note is sounding
+     * @return The number of notes that start while another note is sounding
+     */
+    public int getNbOfOverlappingNotes() { return nbOfOverlappingNotes; }
+
+    /**
+     * Gets the string representation of these statistics
+     * @return The string representation of these statistics
+     */
+    @Override
+    public String toString() {
+        return "SongStats: [notes: " + nbOfNotes + ", windows: " + getNbOfWindows() + ", maxPolyphony: " + maxPolyphony
+                + ", maxPolyphonyTick: " + maxPolyphonyTick + ", averagePolyphony: " + getAveragePolyphony()
+                + ", overlappingTicks: " + overlappingTicks + ", overlappingNotes: " + nbOfOverlappingNotes + "]";
+    }
+
+    /**
+     * This holds the note on and note off events of a song, sorted by tick.
+     * Each event is packed as its tick, then a bit set for note ons, then its midi key.
+     */
+    private static final class Events {
+        private final long[] events;
+        private final long ticksPerWindow;
+        private final int nbOfNotes;
+        private final int nbOfWindows;
+
+        private Events(@NotNull Song song, long ticksPerWindow, boolean parallelSort) throws IllegalArgumentException {
+            if (ticksPerWindow <= 0)
+                throw new IllegalArgumentException("The number of ticks per window needs to be a positive number!");
+            this.ticksPerWindow = ticksPerWindow;
+            List<MidiNote> midiNotes = song.getMidiNotes();
+            int nbOfEvents = 0;
+            long[] packedEvents = new long[midiNotes.size() * 2];
+            long lastTick = 0;
+            for (MidiNote midiNote : midiNotes) {
+                if (midiNote.getEndTick() == midiNote.getStartTick()) continue;
+                if (midiNote.getStartTick() < 0 || midiNote.getEndTick() >= 1L << 55)
+                    throw new IllegalArgumentException("The ticks of the notes need to be between 0 and 2^55!");
+                packedEvents[nbOfEvents++] = midiNote.getStartTick() << 8 | NOTE_ON | midiNote.getNote().getMidiKey();
+                packedEvents[nbOfEvents++] = midiNote.getEndTick() << 8 | midiNote.getNote().getMidiKey();
+                lastTick = Math.max(lastTick, midiNote.getEndTick());
+            }
+            events = Arrays.copyOf(packedEvents, nbOfEvents);
+            if (parallelSort) Arrays.parallelSort(events);
+            else Arrays.sort(events);
+            nbOfNotes = nbOfEvents / 2;
+            long windows = lastTick == 0 ? 0 : (lastTick - 1) / ticksPerWindow + 1;
+            if (windows > Integer.MAX_VALUE - 8)
+                throw new IllegalArgumentException("The song has too many windows, use a bigger number of ticks per window!");
+            nbOfWindows = (int) windows;
+        }
+
+        private static long tick(long event) { return event >>> 8; }
+
+        private static boolean isNoteOn(long event) { return (event & NOTE_ON) != 0; }
+
+        private static int midiKey(long event) { return (int) (event & 0x7F); }
+
+        /**
+         * Finds, with a binary search, the first event at or after the start of a window.
+         * @param window The window
+         * @return The index of the first event at or after the start of the window, or the number of events if there are none
+         */
+        private int firstEventOfWindow(int window) {
+            long firstEvent = window * ticksPerWindow << 8;
+            int low = 0, high = events.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (events[middle] < firstEvent) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+    }
+
+    /**
+     * This sweeps the events of a range of windows and accumulates the statistics of that range.
+     */
+    private static final class Sweep {
+        private final Events events;
+        private final int[] notesPerWindow;
+        private final int[] lowestMidiKeys;
+        private final int[] highestMidiKeys;
+        private final int[] heldMidiKeys;
+
+        private int maxPolyphony;
+        private long maxPolyphonyTick;
+        private long soundingTicks;
+        private long overlappingTicks;
+        private long noteTicks;
+        private int nbOfOverlappingNotes;
+
+        private Sweep(Events events, int[] notesPerWindow, int[] lowestMidiKeys, int[] highestMidiKeys, int[] heldMidiKeys) {
+            this.events = events;
+            this.notesPerWindow = notesPerWindow;
+            this.lowestMidiKeys = lowestMidiKeys;
+            this.highestMidiKeys = highestMidiKeys;
+            this.heldMidiKeys = heldMidiKeys;
+        }
+
+        /**
+         * Sweeps the events of a range of windows.
+         * @param firstWindow The first window of the range
+         * @param endWindow The window after the last window of the range
+         */
+        private void run(int firstWindow, int endWindow) {
+            if (firstWindow >= endWindow) return;
+            int polyphony = 0;
+            for (int held : heldMidiKeys) polyphony += held;
+            long ticksPerWindow = events.ticksPerWindow;
+            long previousTick = firstWindow * ticksPerWindow;
+            int window = firstWindow - 1;
+            int end = endWindow == events.nbOfWindows ? events.events.length : events.firstEventOfWindow(endWindow);
+
+            for (int i = events.firstEventOfWindow(firstWindow); i < end; i++) {
+                long event = events.events[i], tick = Events.tick(event);
+                boolean noteOn = Events.isNoteOn(event);
+                // A window is entered once the notes ending at its first tick are released, before the notes starting at that tick
+                int windowOfEvent = (int) Math.min(endWindow - 1, tick / ticksPerWindow - (!noteOn && tick % ticksPerWindow == 0 ? 1 : 0));
+                if (windowOfEvent > window) {
+                    enterWindows(window + 1, windowOfEvent + 1);
+                    window = windowOfEvent;
+                }
+                addTicks(tick - previousTick, polyphony);
+                previousTick = tick;
+
+                int midiKey = Events.midiKey(event);
+                if (noteOn) {
+                    if (polyphony > 0) nbOfOverlappingNotes++;
+                    polyphony++;
+                    heldMidiKeys[midiKey]++;
+                    notesPerWindow[window]++;
+                    if (lowestMidiKeys[window] == -1 || midiKey < lowestMidiKeys[window]) lowestMidiKeys[window] = midiKey;
+                    highestMidiKeys[window] = Math.max(highestMidiKeys[window], midiKey);
+                    if (polyphony > maxPolyphony) {
+                        maxPolyphony = polyphony;
+                        maxPolyphonyTick = tick;
+                    }
+                } else {
+                    polyphony--;
+                    heldMidiKeys[midiKey]--;
+                }
+            }
+            if (window + 1 < endWindow) enterWindows(window + 1, endWindow);
+            if (endWindow < events.nbOfWindows) addTicks(endWindow * ticksPerWindow - previousTick, polyphony);
+        }
+
+        /**
+         * Sets the range of windows to the range of the held notes, since no note starts or ends before them.
+         * @param fromWindow The first window to enter
+         * @param toWindow The window after the last window to enter
+         */
+        private void enterWindows(int fromWindow, int toWindow) {
+            int lowest = -1, highest = -1;
+            for (int midiKey = 0; midiKey < heldMidiKeys.length; midiKey++) {
+                if (heldMidiKeys[midiKey] == 0) continue;
+                if (lowest == -1) lowest = midiKey;
+                highest = midiKey;
+            }
+            Arrays.fill(lowestMidiKeys, fromWindow, toWindow, lowest);
+            Arrays.fill(highestMidiKeys, fromWindow, toWindow, highest);
+        }
+
+        private void addTicks(long ticks, int polyphony) {
+            if (polyphony >= 1) soundingTicks += ticks;
+            if (polyphony >= 2) overlappingTicks += ticks;
+            noteTicks += ticks * polyphony;
+        }
+
+        /**
+         * Adds the statistics of the range of windows that comes after this one.
+         * @param next The sweep of the next range of windows
+         */
+        private void combine(@NotNull Sweep next) {
+            if (next.maxPolyphony > maxPolyphony) {
+                maxPolyphony = next.maxPolyphony;
+                maxPolyphonyTick = next.maxPolyphonyTick;
+            }
+            soundingTicks += next.soundingTicks;
+            overlappingTicks += next.overlappingTicks;
+            noteTicks += next.noteTicks;
+            nbOfOverlappingNotes += next.nbOfOverlappingNotes;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.JScore;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * This is an engine to voice the chords of a chord progression so that the voices move as little as possible.
+ * Every chord can be played in any of its inversions, an octave lower, at the same octave or an octave higher.
+ * The voicings of each chord are chosen so that the total number of semitones the voices move by is minimal.
+ * A voicing is encoded in a long, one byte per note, so a chord can have at most 8 notes.
+ * The voicings of each chord and the motion cost between the voicings of two chords are cached,
+ * so voicing progressions that use the same chords again and again is fast.
+ * The caches are open addressing hash tables keyed by the encoded chords, so looking up a cached value does not allocate anything.
+ * Each cache holds at most a fixed number of entries and is emptied when it is full, so the memory used by an engine stays bounded.
+ * It is safe to use the same engine from multiple threads.
+ */
+public class VoiceLeading {
+
+    /**
+     * The maximum number of notes a chord can have to be voiced
+     */
+    public static final int MAX_NOTES_PER_CHORD = 8;
+
+    /**
+     * The default maximum number of entries of each cache
+     */
+    public static final int DEFAULT_MAX_CACHED_ENTRIES = 4096;
+
+    private final Cache voicingsByChord;
+    private final Cache costsByTransition;
+
+    /**
+     * Creates a voice leading engine whose caches hold at most {@link #DEFAULT_MAX_CACHED_ENTRIES} entries each
+     */
+    public VoiceLeading() { this(DEFAULT_MAX_CACHED_ENTRIES); }
+
+    /**
+     * Creates a voice leading engine whose caches hold at most the specified number of entries each
+     * @param maxCachedEntries The maximum number of entries of each cache
+     * @throws IllegalArgumentException If the maximum number of entries is not positive
+     */
+    public VoiceLeading(int maxCachedEntries) throws IllegalArgumentException {
+        if (maxCachedEntries <= 0)
+            throw new IllegalArgumentException("The maximum number of cached entries must be positive, it is " + maxCachedEntries + "!");
+        this.voicingsByChord = new Cache(maxCachedEntries);
+        this.costsByTransition = new Cache(maxCachedEntries);
+    }
+
+    /**
+     * Voices the chords of a chord progression so that the total motion of the voices is minimal.
+     * The chord progression is not modified.
+     * @param chordProgression The chord progression to voice
+     * @return A new chord progression with the same key and a new voiced chord for each chord of the progression
+     * @throws IllegalArgumentException If a chord has more than {@link #MAX_NOTES_PER_CHORD} notes
+     */
+    public @NotNull ChordProgression voice(@NotNull ChordProgression chordProgression) throws IllegalArgumentException {
+        int nbOfChords = chordProgression.getChords().size();
+        Key key = chordProgression.getKey();
+        ChordProgression voiced = new ChordProgression(new Key(key.getMode(), new Note(key.getTonic().getMidiKey())));
+        if (nbOfChords == 0) return voiced;
+
+        long[] chordKeys = new long[nbOfChords];
+        long[][] voicings = new long[nbOfChords][];
+        for (int i = 0; i < nbOfChords; i++) {
+            chordKeys[i] = encode(chordProgression.getChords().get(i));
+            // An encoded chord is never 0, so the voicings of a chord are cached under the chord and 0
+            voicings[i] = (long[]) voicingsByChord.get(chordKeys[i], 0);
+            if (voicings[i] == null)
+                voicings[i] = (long[]) voicingsByChord.putIfAbsent(chordKeys[i], 0, generateVoicings(chordKeys[i]));
+        }
+
+        // totalCost[v] is the minimal motion to reach voicing v of the current chord,
+        // and previousVoicing[i][v] is the voicing of chord i - 1 that achieves it.
+        int[] totalCost = new int[voicings[0].length];
+        int[][] previousVoicing = new int[nbOfChords][];
+        for (int i = 1; i < nbOfChords; i++) {
+            int[] costs = (int[]) costsByTransition.get(chordKeys[i - 1], chordKeys[i]);
+            if (costs == null)
+                costs = (int[]) costsByTransition.putIfAbsent(chordKeys[i - 1], chordKeys[i], generateCosts(voicings[i - 1], voicings[i]));
+            int nbOfFromVoicings = voicings[i - 1].length, nbOfToVoicings = voicings[i].length;
+            int[] nextTotalCost = new int[nbOfToVoicings];
+            previousVoicing[i] = new int[nbOfToVoicings];
+            for (int to = 0; to < nbOfToVoicings; to++) {
+                int bestCost = Integer.MAX_VALUE, bestFrom = 0;
+                for (int from = 0; from < nbOfFromVoicings; from++) {
+                    int cost = totalCost[from] + costs[from * nbOfToVoicings + to];
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestFrom = from;
+                    }
+                }
+                nextTotalCost[to] = bestCost;
+                previousVoicing[i][to] = bestFrom;
+            }
+            totalCost = nextTotalCost;
+        }
+
+        int[] chosenVoicings = new int[nbOfChords];
+        for (int v = 1; v < totalCost.length; v++)
+            if (totalCost[v] < totalCost[chosenVoicings[nbOfChords - 1]]) chosenVoicings[nbOfChords - 1] = v;
+        for (int i = nbOfChords - 1; i > 0; i--)
+            chosenVoicings[i - 1] = previousVoicing[i][chosenVoicings[i]];
+        for (int i = 0; i < nbOfChords; i++)
+            voiced.addAChord(decode(voicings[i][chosenVoicings[i]]));
+        return voiced;
+    }
+
+    /**
+     * Encodes the notes of a chord in a long, sorted from the lowest to the highest note.
+     * Each note takes one byte holding its midi key plus one, so that an empty byte means there is no note.
+     * @param chord The chord to encode
+     * @return The encoded chord
+     * @throws IllegalArgumentException If the chord has more than {@link #MAX_NOTES_PER_CHORD} notes
+     */
+    private static long encode(@NotNull Chord chord) throws IllegalArgumentException {
+        int nbOfNotes = chord.getNotes().size();
+        if (nbOfNotes > MAX_NOTES_PER_CHORD)
+            throw new IllegalArgumentException("Only chords with up to " + MAX_NOTES_PER_CHORD + " notes can be voiced, this one has " + nbOfNotes + "!");
+        int[] midiKeys = new int[nbOfNotes];
+        for (int i = 0; i < nbOfNotes; i++)
+            midiKeys[i] = chord.getNotes().get(i).getMidiKey();
+        return encode(midiKeys, nbOfNotes);
+    }
+
+    /**
+     * Sorts and encodes midi keys in a long.
+     * @param midiKeys The midi keys to encode, which will be sorted
+     * @param nbOfNotes The number of midi keys to encode
+     * @return The encoded midi keys
+     */
+    private static long encode(int[] midiKeys, int nbOfNotes) {
+        Arrays.sort(midiKeys, 0, nbOfNotes);
+        long encoded = 0;
+        for (int i = 0; i < nbOfNotes; i++)
+            encoded |= (long) (midiKeys[i] + 1) << (8 * i);
+        return encoded;
+    }
+
+    /**
+     * Decodes an encoded chord into a new chord object.
+     * @param encoded The encoded chord
+     * @return The chord, with its notes from the lowest to the highest
+     */
+    private static @NotNull Chord decode(long encoded) {
+        Chord chord = new Chord(new Note((byte) ((encoded & 0xFF) - 1)));
+        for (int i = 1; i < MAX_NOTES_PER_CHORD && midiKeyPlusOne(encoded, i) != 0; i++)
+            chord.appendANewNote(new Note((byte) (midiKeyPlusOne(encoded, i) - 1)));
+        return chord;
+    }
+
+    /**
+     * Gets the byte of a note in an encoded chord.
+     * @param encoded The encoded chord
+     * @param index The index of the note in the encoded chord
+     * @return The midi key of the note plus one, or 0 if there is no note at that index
+     */
+    private static int midiKeyPlusOne(long encoded, int index) { return (int) ((encoded >>> (8 * index)) & 0xFF); }
+
+    /**
+     * Gets the number of notes of an encoded chord.
+     * @param encoded The encoded chord
+     * @return The number of notes of the encoded chord
+     */
+    private static int nbOfNotes(long encoded) { return (Long.SIZE - Long.numberOfLeadingZeros(encoded) + 7) / 8; }
+
+    /**
+     * Generates every voicing of an encoded chord, which are its inversions one octave down, at the same octave and one octave up.
+     * Voicings that would go out of the midi range are left out.
+     * @param encoded The encoded chord
+     * @return The encoded voicings of the chord, starting with the chord itself
+     */
+    private static long @NotNull [] generateVoicings(long encoded) {
+        int nbOfNotes = nbOfNotes(encoded);
+        long[] voicings = new long[nbOfNotes * 3];
+        int nbOfVoicings = 0;
+        int[] midiKeys = new int[nbOfNotes];
+        for (int octaveShift : new int[] {0, -12, 12}) {
+            for (int inversion = 0; inversion < nbOfNotes; inversion++) {
+                boolean inRange = true;
+                for (int i = 0; i < nbOfNotes; i++) {
+                    midiKeys[i] = midiKeyPlusOne(encoded, i) - 1 + octaveShift + (i < inversion ? 12 : 0);
+                    inRange &= midiKeys[i] >= 0 && midiKeys[i] <= 127;
+                }
+                if (!inRange) continue;
+                long voicing = encode(midiKeys, nbOfNotes);
+                boolean duplicate = false;
+                for (int v = 0; v < nbOfVoicings && !duplicate; v++)
+                    duplicate = voicings[v] == voicing;
+                if (!duplicate) voicings[nbOfVoicings++] = voicing;
+            }
+        }
+        return Arrays.copyOf(voicings, nbOfVoicings);
+    }
+
+    /**
+     * Generates the table of the motion cost between every voicing of two chords.
+     * @param fromVoicings The encoded voicings of the first chord
+     * @param toVoicings The encoded voicings of the second chord
+     * @return The motion costs, where the cost from voicing i to voicing j is at index i * toVoicings.length + j
+     */
+    private static int @NotNull [] generateCosts(long @NotNull [] fromVoicings, long @NotNull [] toVoicings) {
+        int[] costs = new int[fromVoicings.length * toVoicings.length];
+        for (int from = 0; from < fromVoicings.length; from++)
+            for (int to = 0; to < toVoicings.length; to++)
+                costs[from * toVoicings.length + to] = motion(fromVoicings[from], toVoicings[to]);
+        return costs;
+    }
+
+    /**
+     * Calculates the number of semitones the voices move by when going from one voicing to another.
+     * When both voicings have the same number of notes, each voice moves to the note with the same position in the other voicing.
+     * Otherwise, each note of the voicing with the most notes is matched with the closest note of the other voicing.
+     * @param from The first encoded voicing
+     * @param to The second encoded voicing
+     * @return The total number of semitones the voices move by
+     */
+    private static int motion(long from, long to) {
+        int nbOfFromNotes = nbOfNotes(from), nbOfToNotes = nbOfNotes(to);
+        int motion = 0;
+        if (nbOfFromNotes == nbOfToNotes) {
+            for (int i = 0; i < nbOfFromNotes; i++)
+                motion += Math.abs(midiKeyPlusOne(from, i) - midiKeyPlusOne(to, i));
+            return motion;
+        }
+        long bigger = nbOfFromNotes > nbOfToNotes ? from : to, smaller = nbOfFromNotes > nbOfToNotes ? to : from;
+        for (int i = 0; i < Math.max(nbOfFromNotes, nbOfToNotes); i++) {
+            int closest = Integer.MAX_VALUE;
+            for (int j = 0; j < Math.min(nbOfFromNotes, nbOfToNotes); j++)
+                closest = Math.min(closest, Math.abs(midiKeyPlusOne(bigger, i) - midiKeyPlusOne(smaller, j)));
+            motion += closest;
+        }
+        return motion;
+    }
+
+    /**
+     * This is a cache of values keyed by a pair of longs, stored in an open addressing hash table with linear probing.
+     * Values are read without locking: the table is only read through a volatile field and its entries are immutable,
+     * so a reader sees either no entry or a complete one. Values are added under a lock, and the table is replaced by
+     * a bigger copy when it is half full, or by an empty one when it holds the maximum number of entries.
+     */
+    private static final class Cache {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final int maxEntries;
+        private volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+        private int size;
+
+        private Cache(int maxEntries) { this.maxEntries = maxEntries; }
+
+        /**
+         * Gets the value cached for a pair of keys.
+         * @param first The first key
+         * @param second The second key
+         * @return The cached value, or null if there is none
+         */
+        private Object get(long first, long second) {
+            Entry[] entries = table;
+            int mask = entries.length - 1;
+            for (int i = hash(first, second) & mask; entries[i] != null; i = (i + 1) & mask)
+                if (entries[i].first == first && entries[i].second == second) return entries[i].value;
+            return null;
+        }
+
+        /**
+         * Caches a value for a pair of keys, unless a value is already cached for them.
+         * @param first The first key
+         * @param second The second key
+         * @param value The value to cache
+         * @return The value cached for the keys, which is the given value if there was none
+         */
+        private synchronized @NotNull Object putIfAbsent(long first, long second, @NotNull Object value) {
+            Object cached = get(first, second);
+            if (cached != null) return cached;
+            Entry[] entries = table;
+            if (size >= maxEntries) {
+                entries = new Entry[INITIAL_CAPACITY];
+                size = 0;
+            } else if (2 * (size + 1) > entries.length) {
+                Entry[] grown = new Entry[entries.length * 2];
+                for (Entry entry : entries)
+                    if (entry != null) insert(grown, entry);
+                entries = grown;
+            }
+            insert(entries, new Entry(first, second, value));
+            size++;
+            table = entries;
+            return value;
+        }
+
+        private static void insert(Entry @NotNull [] entries, @NotNull Entry entry) {
+            int mask = entries.length - 1;
+            int i = hash(entry.first, entry.second) & mask;
+            while (entries[i] != null) i = (i + 1) & mask;
+            entries[i] = entry;
+        }
+
+        private static int hash(long first, long second) {
+            long hash = (first * 0x9E3779B97F4A7C15L + second) * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+
+    /**
+     * This is an entry of a cache, which is never modified once it is in the table.
+     */
+    private static final class Entry {
+        private final long first;
+        private final long second;
+        private final Object value;
+
+        private Entry(long first, long second, Object value) {
+            this.first = first;
+            this.second = second;
+            this.value = value;
+        }
+    }
+}